@@ -0,0 +1,101 @@
+package com.weather.repository;
+
+import com.weather.model.WeatherMeasurement;
+import okio.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara leer una respuesta pivotada con AnnotatedCsvParser sobre el ensamblador (queryRaw) con el camino
+ * de FluxCsvParser y MeasurementMappingPlan (query). La respuesta se arma con las anotaciones, la cabecera
+ * y las filas de la estación s1 de la respuesta grabada pivoted.csv, repetidas con un _time por minuto.
+ * Ambas variantes parten de los mismos bytes; con -prof gc se compara lo que asigna cada una por operación.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnnotatedCsvParserBenchmark {
+
+    private static final String FIXTURE = "pivoted.csv";
+    private static final String TEMPLATE_STATION = "s1";
+
+    @Param({"20"})
+    private int stations;
+
+    @Param({"1440"})
+    private int rowsPerStation;
+
+    private byte[] response;
+
+    @Setup
+    public void setUp() {
+        List<String> header = new ArrayList<>();
+        List<String> templates = new ArrayList<>();
+        for (String line : AnnotatedCsvFixtures.load(FIXTURE).split("\n")) {
+            if (line.startsWith("#") || line.startsWith(",result,")) {
+                header.add(line);
+            } else if (line.startsWith(",,0,")) {
+                templates.add(line);
+            }
+        }
+
+        StringBuilder csv = new StringBuilder();
+        header.forEach(line -> csv.append(line).append('\n'));
+        for (int station = 0; station < stations; station++) {
+            for (int row = 0; row < rowsPerStation; row++) {
+                appendRow(csv, templates.get(row % templates.size()), station, row);
+            }
+        }
+        response = csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<WeatherMeasurement> raw() {
+        Buffer source = new Buffer().write(response);
+        MeasurementAssembler assembler = new MeasurementAssembler();
+        AnnotatedCsvParser parser = new AnnotatedCsvParser(assembler);
+        // Igual que queryRaw: el cliente entrega la respuesta de a una línea
+        for (String line = source.readUtf8Line(); line != null; line = source.readUtf8Line()) {
+            parser.line(line);
+        }
+        parser.finish();
+        return assembler.build();
+    }
+
+    @Benchmark
+    public List<WeatherMeasurement> records() {
+        MeasurementAssembler assembler = new MeasurementAssembler();
+        AnnotatedCsvFixtures.parseRecords(new Buffer().write(response), assembler);
+        return assembler.build();
+    }
+
+    /**
+     * Copia una fila grabada cambiando la tabla, el _time y la estación; las columnas entrecomilladas
+     * van después de station_id y se conservan tal cual
+     */
+    private static void appendRow(StringBuilder csv, String template, int station, int row) {
+        String[] columns = template.split(",", 7);
+        columns[2] = Integer.toString(station);
+        columns[5] = FluxRecordFixtures.time(row).toString();
+        columns[6] = columns[6].replaceFirst("," + TEMPLATE_STATION + ",",
+                "," + FluxRecordFixtures.stationId(station) + ",");
+        csv.append(String.join(",", columns)).append('\n');
+    }
+}
\ No newline at end of file
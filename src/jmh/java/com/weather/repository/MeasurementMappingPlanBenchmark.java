@@ -0,0 +1,72 @@
+package com.weather.repository;
+
+import com.influxdb.query.FluxRecord;
+import com.weather.model.WeatherMeasurement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara el mapeo original campo por campo (50 búsquedas por registro) con el plan compilado por tabla.
+ * La variante sparse simula tablas con pocas columnas pobladas, donde el plan recorre solo esas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MeasurementMappingPlanBenchmark {
+
+    @Param({"full", "sparse"})
+    private String columns;
+
+    private List<FluxRecord> records;
+
+    @Setup
+    public void setUp() {
+        records = FluxRecordFixtures.pivoted(10, 1440);
+        if ("sparse".equals(columns)) {
+            for (FluxRecord record : records) {
+                record.getValues().keySet().removeIf(column -> column.startsWith("wind") || column.startsWith("rain")
+                        || column.startsWith("et_") || column.startsWith("solar") || column.startsWith("uv"));
+            }
+        }
+    }
+
+    @Benchmark
+    public void legacy(Blackhole blackhole) {
+        for (FluxRecord record : records) {
+            WeatherMeasurement.WeatherMeasurementBuilder builder = WeatherMeasurement.builder();
+            LegacyRecordMapper.apply(record, builder);
+            blackhole.consume(builder);
+        }
+    }
+
+    @Benchmark
+    public void plan(Blackhole blackhole) {
+        MeasurementMappingPlan plan = null;
+        int table = -1;
+        for (FluxRecord record : records) {
+            if (plan == null || record.getTable() != table) {
+                table = record.getTable();
+                plan = MeasurementMappingPlan.forColumns(record.getValues().keySet());
+            }
+            WeatherMeasurement.WeatherMeasurementBuilder builder = WeatherMeasurement.builder();
+            plan.apply(record, builder);
+            blackhole.consume(builder);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,105 @@
+package com.weather.repository;
+
+import com.influxdb.Cancellable;
+import com.influxdb.query.FluxRecord;
+import com.weather.model.WeatherMeasurement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara cargar todos los registros de la consulta antes de mapearlos (como hacía query(flux) con
+ * List<FluxTable>) con entregarlos por QueryStream a medida que llegan. Los registros se generan en el
+ * hilo productor, como al leer la respuesta HTTP. La variante en bloque retiene todos los registros hasta
+ * el final y la variante streaming solo la cola acotada: con -prof gc se ve la presión de GC y con un heap
+ * acotado (-jvmArgsAppend -Xmx256m) la variante en bloque deja de caber antes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class QueryStreamBenchmark {
+
+    private static final int STREAM_BUFFER_SIZE = 1024;
+
+    @Param({"20"})
+    private int stations;
+
+    @Param({"1440"})
+    private int rowsPerStation;
+
+    @Benchmark
+    public List<WeatherMeasurement> buffered() {
+        // El hilo de lectura acumula la respuesta completa y recién después se mapea
+        List<FluxRecord> loaded = CompletableFuture.supplyAsync(() -> {
+            List<FluxRecord> records = new ArrayList<>();
+            FluxRecordFixtures.generatePivoted(stations, rowsPerStation, records::add);
+            return records;
+        }).join();
+
+        Mapper mapper = new Mapper();
+        loaded.forEach(mapper::map);
+        return mapper.assembler.build();
+    }
+
+    @Benchmark
+    public List<WeatherMeasurement> streamed() {
+        QueryStream<FluxRecord> stream = new QueryStream<>(STREAM_BUFFER_SIZE);
+        Cancellable cancellable = new NoopCancellable();
+        CompletableFuture.runAsync(() -> {
+            FluxRecordFixtures.generatePivoted(stations, rowsPerStation, record -> stream.onNext(cancellable, record));
+            stream.onComplete();
+        });
+
+        Mapper mapper = new Mapper();
+        stream.drain(mapper::map);
+        return mapper.assembler.build();
+    }
+
+    /**
+     * Mapeo de registros igual al del repositorio: un plan por tabla y fusión en el ensamblador
+     */
+    private static final class Mapper {
+
+        private final MeasurementAssembler assembler = new MeasurementAssembler();
+        private MeasurementMappingPlan plan;
+        private int table = -1;
+
+        private void map(FluxRecord record) {
+            if (plan == null || record.getTable() != table) {
+                table = record.getTable();
+                plan = MeasurementMappingPlan.forColumns(record.getValues().keySet());
+            }
+            plan.apply(record, assembler.row((String) record.getValueByKey("station_id"), record.getTime()));
+        }
+    }
+
+    private static final class NoopCancellable implements Cancellable {
+
+        private volatile boolean cancelled;
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,63 @@
+package com.weather.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LTTB y M4 sobre arreglos primitivos de 10k, 100k y 1M puntos con el mismo presupuesto de puntos.
+ * Ambos deben escalar linealmente: el tiempo por operación debería crecer unas diez veces por cada salto de points.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DownsamplerBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    private int points;
+
+    @Param({"800"})
+    private int maxPoints;
+
+    private double[] x;
+    private double[] y;
+
+    @Setup
+    public void setUp() {
+        // Una fila por minuto: ciclo diario con ruido y algunos picos aislados
+        Random random = new Random(42);
+        x = new double[points];
+        y = new double[points];
+        for (int i = 0; i < points; i++) {
+            x[i] = i * 60.0;
+            y[i] = 20 + 8 * Math.sin(i * 2 * Math.PI / 1440) + random.nextGaussian() * 0.3;
+            if (random.nextInt(5000) == 0) {
+                y[i] += 15;
+            }
+        }
+    }
+
+    @Benchmark
+    public int[] lttb() {
+        return Downsampler.lttb(x, y, maxPoints);
+    }
+
+    @Benchmark
+    public int[] m4() {
+        return Downsampler.m4(x, y, maxPoints);
+    }
+}
\ No newline at end of file
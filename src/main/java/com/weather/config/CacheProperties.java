@@ -0,0 +1,38 @@
+package com.weather.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Configuración de la caché de respuestas (weather.cache)
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "weather.cache")
+public class CacheProperties {
+
+    /**
+     * TTL por caché; una caché sin TTL o con TTL cero no se usa
+     */
+    private Map<String, Duration> ttl = new HashMap<>();
+
+    /**
+     * Tiempo sin accesos tras el cual una entrada se descarta, expresado en múltiplos de su TTL
+     */
+    private int idleTtlMultiplier = 10;
+
+    /**
+     * Número máximo de entradas entre todas las cachés
+     */
+    private int maxEntries = 1000;
+
+    /**
+     * Hilos dedicados a refrescar entradas vencidas en segundo plano
+     */
+    private int refreshThreads = 2;
+}
\ No newline at end of file
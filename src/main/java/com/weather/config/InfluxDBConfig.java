@@ -2,7 +2,10 @@ package com.weather.config;
 
 import com.influxdb.client.InfluxDBClient;
 import com.influxdb.client.InfluxDBClientFactory;
+import com.influxdb.client.InfluxDBClientOptions;
 import lombok.Getter;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -23,11 +26,31 @@ public class InfluxDBConfig {
     @Value("${influxdb.bucket}")
     private String bucket;
 
+    /**
+     * Máximo de consultas simultáneas contra InfluxDB. Las consultas por callbacks usan el
+     * Dispatcher de OkHttp, que por defecto solo permite 5 peticiones concurrentes por host.
+     */
+    @Value("${influxdb.max-concurrent-queries:64}")
+    private int maxConcurrentQueries;
+
     @Bean
     public InfluxDBClient influxDBClient() {
         if (token == null || token.isEmpty()) {
             throw new IllegalStateException("InfluxDB token is not configured. Please set 'influxdb.token' in application.yml");
         }
-        return InfluxDBClientFactory.create(url, token.toCharArray(), org, bucket);
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxConcurrentQueries);
+        dispatcher.setMaxRequestsPerHost(maxConcurrentQueries);
+
+        InfluxDBClientOptions options = InfluxDBClientOptions.builder()
+                .url(url)
+                .authenticateToken(token.toCharArray())
+                .org(org)
+                .bucket(bucket)
+                .okHttpClient(new OkHttpClient.Builder().dispatcher(dispatcher))
+                .build();
+
+        return InfluxDBClientFactory.create(options);
     }
 }
\ No newline at end of file
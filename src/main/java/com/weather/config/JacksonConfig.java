@@ -0,0 +1,21 @@
+package com.weather.config;
+
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.weather.model.FieldProjection;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class JacksonConfig {
+
+    /**
+     * Filtro por defecto de WeatherMeasurement: sin parámetro fields se serializan todas las propiedades
+     */
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer measurementFilterCustomizer() {
+        return builder -> builder.filters(new SimpleFilterProvider()
+                .addFilter(FieldProjection.FILTER_ID, SimpleBeanPropertyFilter.serializeAll()));
+    }
+}
\ No newline at end of file
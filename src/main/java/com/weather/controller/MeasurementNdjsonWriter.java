@@ -0,0 +1,80 @@
+package com.weather.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.weather.model.FieldProjection;
+import com.weather.model.WeatherMeasurement;
+import com.weather.service.StationDataStream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Escribe mediciones en formato NDJSON: un objeto WeatherMeasurement por línea, estación tras estación.
+ * La salida se vacía cada cierta cantidad de líneas y al terminar cada estación. Si el cliente se desconecta
+ * la escritura falla y la excepción corta el recorrido del stream, lo que cancela la consulta a InfluxDB.
+ */
+final class MeasurementNdjsonWriter implements Closeable {
+
+    /**
+     * Líneas escritas entre dos vaciados de la salida
+     */
+    private static final int FLUSH_EVERY_LINES = 1000;
+
+    private final ObjectWriter measurementWriter;
+    private final JsonGenerator generator;
+
+    private long lines;
+
+    MeasurementNdjsonWriter(ObjectMapper objectMapper, FieldProjection projection, OutputStream out)
+            throws IOException {
+        // Sin separador entre valores raíz: cada línea ya termina en salto de línea
+        this.measurementWriter = StationDataJsonWriter.measurementWriter(objectMapper, projection)
+                .withRootValueSeparator("");
+        this.generator = measurementWriter.createGenerator(out);
+    }
+
+    /**
+     * Escribe las mediciones de todas las estaciones del stream
+     */
+    void writeMeasurements(StationDataStream stations) throws IOException {
+        try {
+            stations.forEach(station -> {
+                try {
+                    for (WeatherMeasurement measurement : station.getMeasurements()) {
+                        writeLine(measurement);
+                    }
+                    generator.flush();
+                } catch (IOException e) {
+                    // Se propaga como excepción no comprobada para que la consulta en curso se cancele
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Cantidad de líneas escritas
+     */
+    long getLines() {
+        return lines;
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+
+    private void writeLine(WeatherMeasurement measurement) throws IOException {
+        measurementWriter.writeValue(generator, measurement);
+        generator.writeRaw('\n');
+        if (++lines % FLUSH_EVERY_LINES == 0) {
+            generator.flush();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,205 @@
+package com.weather.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.weather.dto.StationDataResponse;
+import com.weather.model.FieldProjection;
+import com.weather.model.MeasurementField;
+import com.weather.model.MeasurementSeries;
+import com.weather.model.WeatherMeasurement;
+import com.weather.service.StationDataStream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Escribe las respuestas de datos de estaciones directamente sobre la salida con un JsonGenerator.
+ * Las mediciones se serializan de a una, así que las listas respaldadas por series por columnas
+ * nunca se materializan completas, y la salida se vacía al terminar cada estación.
+ * En formato de filas el JSON es el mismo que produce la serialización de StationDataResponse, con la
+ * proyección de fields aplicada. En formato columnar las mediciones se reemplazan por un objeto columns
+ * con un arreglo por propiedad: time en milisegundos desde epoch y null para los valores ausentes.
+ */
+final class StationDataJsonWriter implements Closeable {
+
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+    private static final String BAR_TREND_PROPERTY = "barTrend";
+
+    private final ObjectWriter measurementWriter;
+    private final JsonGenerator generator;
+    private final FieldProjection projection;
+    private final Format format;
+
+    StationDataJsonWriter(ObjectMapper objectMapper, FieldProjection projection, Format format, OutputStream out)
+            throws IOException {
+        this.measurementWriter = measurementWriter(objectMapper, projection);
+        this.generator = measurementWriter.createGenerator(out);
+        this.projection = projection;
+        this.format = format;
+    }
+
+    /**
+     * Escribe un objeto con una entrada por estación, en el orden en que las entrega el stream
+     */
+    void writeStations(StationDataStream stations) throws IOException {
+        generator.writeStartObject();
+        try {
+            stations.forEach(station -> {
+                try {
+                    generator.writeFieldName(station.getStationId());
+                    writeStation(station);
+                } catch (IOException e) {
+                    // Se propaga como excepción no comprobada para que la consulta en curso se cancele
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * Escribe los datos de una estación y los envía al cliente. En formato columnar se recorre la serie que
+     * respalda la lista de mediciones si la hay; si no, se empaqueta la lista, lo que descarta las filas que
+     * no avanzan en el tiempo. totalMeasurements siempre cuenta las filas que se escriben.
+     */
+    void writeStation(StationDataResponse station) throws IOException {
+        List<WeatherMeasurement> measurements = station.getMeasurements();
+        MeasurementSeries series = format == Format.COLUMNAR
+                ? MeasurementSeries.from(station.getStationId(), measurements)
+                : null;
+
+        generator.writeStartObject();
+        generator.writeStringField("stationId", station.getStationId());
+        generator.writeStringField("stationName", station.getStationName());
+        writeNumberField("latitude", station.getLatitude());
+        writeNumberField("longitude", station.getLongitude());
+        generator.writeNumberField("totalMeasurements", series != null ? series.size() : measurements.size());
+
+        if (series != null) {
+            writeColumns(series);
+        } else {
+            generator.writeArrayFieldStart("measurements");
+            for (WeatherMeasurement measurement : measurements) {
+                measurementWriter.writeValue(generator, measurement);
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndObject();
+        generator.flush();
+    }
+
+    /**
+     * Escribe un arreglo por propiedad recorriendo las columnas de la serie; solo se incluyen
+     * las propiedades pedidas que tienen algún valor en las filas que se escriben
+     */
+    private void writeColumns(MeasurementSeries series) throws IOException {
+        generator.writeObjectFieldStart("columns");
+
+        generator.writeArrayFieldStart("time");
+        for (int row = 0; row < series.size(); row++) {
+            generator.writeNumber(Math.floorDiv(series.timestampNanos(row), NANOS_PER_MILLI));
+        }
+        generator.writeEndArray();
+
+        if (hasBarTrendValue(series) && isRequested(BAR_TREND_PROPERTY)) {
+            generator.writeArrayFieldStart(BAR_TREND_PROPERTY);
+            for (int row = 0; row < series.size(); row++) {
+                generator.writeString(series.barTrend(row));
+            }
+            generator.writeEndArray();
+        }
+
+        for (MeasurementField field : MeasurementField.values()) {
+            if (!series.hasField(field) || !isRequested(field.getProperty())) {
+                continue;
+            }
+            generator.writeArrayFieldStart(field.getProperty());
+            for (int row = 0; row < series.size(); row++) {
+                double value = series.value(field, row);
+                if (Double.isNaN(value)) {
+                    generator.writeNull();
+                } else {
+                    generator.writeNumber(value);
+                }
+            }
+            generator.writeEndArray();
+        }
+
+        generator.writeEndObject();
+    }
+
+    /**
+     * La columna de tendencia puede estar reservada sin valores en las filas visibles de una vista
+     */
+    private static boolean hasBarTrendValue(MeasurementSeries series) {
+        if (!series.hasBarTrend()) {
+            return false;
+        }
+        for (int row = 0; row < series.size(); row++) {
+            if (series.barTrend(row) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isRequested(String property) {
+        return projection == null || projection.getProperties().contains(property);
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+
+    private void writeNumberField(String name, Double value) throws IOException {
+        if (value != null) {
+            generator.writeNumberField(name, value);
+        } else {
+            generator.writeNullField(name);
+        }
+    }
+
+    /**
+     * Forma en que se escriben las mediciones de cada estación
+     */
+    enum Format {
+        ROWS,
+        COLUMNAR;
+
+        /**
+         * Interpreta el parámetro format; sin valor se usan filas
+         */
+        static Format parse(String format) {
+            if (format == null || format.isBlank()) {
+                return ROWS;
+            }
+            try {
+                return valueOf(format.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("format must be 'rows' or 'columnar'");
+            }
+        }
+    }
+
+    /**
+     * Writer de mediciones con la proyección aplicada y sin vaciar la salida tras cada valor
+     */
+    static ObjectWriter measurementWriter(ObjectMapper objectMapper, FieldProjection projection) {
+        SimpleBeanPropertyFilter filter = projection != null
+                ? SimpleBeanPropertyFilter.filterOutAllExcept(projection.getProperties())
+                : SimpleBeanPropertyFilter.serializeAll();
+        return objectMapper.writer(new SimpleFilterProvider().addFilter(FieldProjection.FILTER_ID, filter))
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+}
\ No newline at end of file
@@ -1,14 +1,24 @@
 package com.weather.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.weather.dto.StationDataResponse;
 import com.weather.dto.StationInfo;
+import com.weather.dto.WeatherDataSimple;
+import com.weather.model.FieldProjection;
 import com.weather.model.WeatherMeasurement;
+import com.weather.service.StationDataStream;
 import com.weather.service.WeatherService;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 
@@ -22,6 +32,7 @@ import java.util.Map;
 public class WeatherController {
 
     private final WeatherService weatherService;
+    private final ObjectMapper objectMapper;
 
     /**
      * GET /weather/stations
@@ -34,6 +45,20 @@ public class WeatherController {
         return ResponseEntity.ok(stations);
     }
 
+    /**
+     * GET /weather/stations/simple
+     * Obtiene datos meteorológicos simplificados de varias estaciones en una sola llamada
+     *
+     * @param ids IDs de las estaciones (opcional, default: todas)
+     */
+    @GetMapping("/stations/simple")
+    public ResponseEntity<List<WeatherDataSimple>> getStationsWeatherDataSimple(
+            @RequestParam(required = false) List<String> ids) {
+        log.info("GET /weather/stations/simple - Fetching simplified weather data for stations {}", ids);
+        List<WeatherDataSimple> data = weatherService.getStationsWeatherDataSimple(ids);
+        return ResponseEntity.ok(data);
+    }
+
     /**
      * GET /weather/stations/{stationId}/simple
      * Obtiene datos meteorológicos simplificados de una estación
@@ -43,12 +68,12 @@ public class WeatherController {
      * @param stationId ID de la estación
      */
     @GetMapping("/stations/{stationId}/simple")
-    public ResponseEntity<Map<String, Object>> getStationWeatherDataSimple(
+    public ResponseEntity<WeatherDataSimple> getStationWeatherDataSimple(
             @PathVariable String stationId) {
         log.info("GET /weather/stations/{}/simple - Fetching simplified weather data", stationId);
-        Map<String, Object> data = weatherService.getStationWeatherDataSimple(stationId);
+        WeatherDataSimple data = weatherService.getStationWeatherDataSimple(stationId);
 
-        if (data.isEmpty()) {
+        if (data == null) {
             log.warn("No data found for station {}", stationId);
             return ResponseEntity.notFound().build();
         }
@@ -58,38 +83,127 @@ public class WeatherController {
 
     /**
      * GET /weather/stations/{stationId}
-     * Obtiene los datos de una estación específica
+     * Obtiene los datos de una estación específica. La respuesta ya está en memoria, así que se escribe
+     * en el hilo de la petición, sin streaming asíncrono; el writer solo aporta la proyección y el formato
      *
      * @param stationId ID de la estación
      * @param days Número de días de datos a recuperar (opcional, default: 3)
+     * @param start Inicio del intervalo en ISO-8601 (opcional, excluyente con days)
+     * @param end Fin del intervalo en ISO-8601 (opcional, default: ahora)
+     * @param resolution Resolución de los datos agregados, por ejemplo 5m, 1h o auto (opcional, default: sin agregar)
+     * @param maxPoints Máximo de puntos por estación (opcional, default: sin límite)
+     * @param downsample Algoritmo de reducción: lttb o m4 (opcional, default: lttb)
+     * @param downsampleField Campo que guía la reducción (opcional, default: temp)
+     * @param fields Propiedades de cada medición a devolver, por ejemplo temp,hum (opcional, default: todas)
+     * @param format Forma de las mediciones: rows o columnar, un arreglo por propiedad (opcional, default: rows)
      */
     @GetMapping("/stations/{stationId}")
-    public ResponseEntity<StationDataResponse> getStationData(
+    public void getStationData(
             @PathVariable String stationId,
-            @RequestParam(required = false) Integer days) {
-        log.info("GET /weather/stations/{} - Fetching station data for {} days", stationId, days);
-        StationDataResponse response = weatherService.getStationData(stationId, days);
+            @RequestParam(required = false) Integer days,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant end,
+            @RequestParam(required = false) String resolution,
+            @RequestParam(required = false) Integer maxPoints,
+            @RequestParam(required = false) String downsample,
+            @RequestParam(required = false) String downsampleField,
+            @RequestParam(required = false) List<String> fields,
+            @RequestParam(required = false) String format,
+            HttpServletResponse servletResponse) throws IOException {
+        log.info("GET /weather/stations/{} - Fetching station data for days={} start={} end={} "
+                + "resolution={} maxPoints={} fields={} format={}",
+                stationId, days, start, end, resolution, maxPoints, fields, format);
+        FieldProjection projection = FieldProjection.parse(fields);
+        StationDataJsonWriter.Format outputFormat = StationDataJsonWriter.Format.parse(format);
+        StationDataResponse response = weatherService.getStationData(stationId, days, start, end, resolution,
+                maxPoints, downsample, downsampleField, projection);
 
         if (response.getTotalMeasurements() == 0) {
             log.warn("No data found for station {}", stationId);
-            return ResponseEntity.notFound().build();
+            servletResponse.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
         }
 
-        return ResponseEntity.ok(response);
+        servletResponse.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (StationDataJsonWriter writer = new StationDataJsonWriter(objectMapper, projection, outputFormat,
+                servletResponse.getOutputStream())) {
+            writer.writeStation(response);
+        }
     }
 
     /**
      * GET /weather/stations/data/all
-     * Obtiene los datos de todas las estaciones
+     * Obtiene los datos de todas las estaciones. En intervalos crudos anteriores a la caché de segmentos cada
+     * estación se escribe en cuanto se lee de InfluxDB; con resolución, o dentro de la caché, la respuesta
+     * completa sale de la caché de respuestas y se escribe después de armarla
      *
      * @param days Número de días de datos a recuperar (opcional, default: 3)
+     * @param start Inicio del intervalo en ISO-8601 (opcional, excluyente con days)
+     * @param end Fin del intervalo en ISO-8601 (opcional, default: ahora)
+     * @param resolution Resolución de los datos agregados, por ejemplo 5m, 1h o auto (opcional, default: sin agregar)
+     * @param maxPoints Máximo de puntos por estación (opcional, default: sin límite)
+     * @param downsample Algoritmo de reducción: lttb o m4 (opcional, default: lttb)
+     * @param downsampleField Campo que guía la reducción (opcional, default: temp)
+     * @param fields Propiedades de cada medición a devolver, por ejemplo temp,hum (opcional, default: todas)
+     * @param format Forma de las mediciones: rows o columnar, un arreglo por propiedad (opcional, default: rows)
      */
     @GetMapping("/stations/data/all")
-    public ResponseEntity<Map<String, StationDataResponse>> getAllStationsData(
-            @RequestParam(required = false) Integer days) {
-        log.info("GET /weather/stations/data/all - Fetching data for all stations for {} days", days);
-        Map<String, StationDataResponse> data = weatherService.getAllStationsData(days);
-        return ResponseEntity.ok(data);
+    public ResponseEntity<StreamingResponseBody> getAllStationsData(
+            @RequestParam(required = false) Integer days,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant end,
+            @RequestParam(required = false) String resolution,
+            @RequestParam(required = false) Integer maxPoints,
+            @RequestParam(required = false) String downsample,
+            @RequestParam(required = false) String downsampleField,
+            @RequestParam(required = false) List<String> fields,
+            @RequestParam(required = false) String format) {
+        log.info("GET /weather/stations/data/all - Fetching all stations data for days={} start={} end={} "
+                + "resolution={} maxPoints={} fields={} format={}",
+                days, start, end, resolution, maxPoints, fields, format);
+        FieldProjection projection = FieldProjection.parse(fields);
+        StationDataJsonWriter.Format outputFormat = StationDataJsonWriter.Format.parse(format);
+        StationDataStream stations = weatherService.streamAllStationsData(days, start, end, resolution,
+                maxPoints, downsample, downsampleField, projection);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> {
+                    try (StationDataJsonWriter writer =
+                                 new StationDataJsonWriter(objectMapper, projection, outputFormat, out)) {
+                        writer.writeStations(stations);
+                    }
+                });
+    }
+
+    /**
+     * GET /weather/stations/data/export
+     * Exporta las mediciones de todas las estaciones en NDJSON, una por línea, a medida que se leen de InfluxDB.
+     * Pensado para consumidores masivos: no agrega ni reduce puntos y no usa las cachés en memoria.
+     *
+     * @param days Número de días de datos a recuperar (opcional, default: 3)
+     * @param start Inicio del intervalo en ISO-8601 (opcional, excluyente con days)
+     * @param end Fin del intervalo en ISO-8601 (opcional, default: ahora)
+     * @param fields Propiedades de cada medición a devolver, por ejemplo temp,hum (opcional, default: todas)
+     */
+    @GetMapping(value = "/stations/data/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportAllStationsData(
+            @RequestParam(required = false) Integer days,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant end,
+            @RequestParam(required = false) List<String> fields) {
+        log.info("GET /weather/stations/data/export - Exporting all stations data for days={} start={} end={} "
+                + "fields={}",
+                days, start, end, fields);
+        FieldProjection projection = FieldProjection.parse(fields);
+        StationDataStream stations = weatherService.exportAllStationsData(days, start, end, projection);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> {
+                    try (MeasurementNdjsonWriter writer = new MeasurementNdjsonWriter(objectMapper, projection, out)) {
+                        writer.writeMeasurements(stations);
+                        log.debug("Exported {} measurements", writer.getLines());
+                    }
+                });
     }
 
     /**
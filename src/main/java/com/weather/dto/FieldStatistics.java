@@ -0,0 +1,21 @@
+package com.weather.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO con el resumen estadístico de un campo en una ventana de tiempo
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FieldStatistics {
+
+    private Double min;
+    private Double max;
+    private Double avg;
+    private long count;
+}
\ No newline at end of file
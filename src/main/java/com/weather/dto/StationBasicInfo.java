@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.Instant;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -15,4 +17,5 @@ public class StationBasicInfo {
     private Double latitude;
     private Double longitude;
     private Double elevation;
+    private Instant lastSeen;
 }
\ No newline at end of file
@@ -0,0 +1,99 @@
+package com.weather.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Subconjunto de propiedades de WeatherMeasurement pedido por el cliente (parámetro fields).
+ * Conoce tanto los nombres de las propiedades JSON, para restringir la serialización, como las columnas
+ * de InfluxDB, para filtrar _field en la consulta. stationId, stationName y timestamp se incluyen siempre.
+ */
+public final class FieldProjection {
+
+    /**
+     * Id del filtro de Jackson declarado en WeatherMeasurement
+     */
+    public static final String FILTER_ID = "measurementFields";
+
+    private static final List<String> ALWAYS_INCLUDED = List.of("stationId", "stationName", "timestamp");
+    private static final String BAR_TREND_PROPERTY = "barTrend";
+    private static final String BAR_TREND_COLUMN = "bar_trend";
+
+    private final Set<String> properties;
+    private final Set<String> columns;
+
+    private FieldProjection(Set<String> properties, Set<String> columns) {
+        this.properties = Collections.unmodifiableSet(properties);
+        this.columns = Collections.unmodifiableSet(columns);
+    }
+
+    /**
+     * Interpreta la lista de propiedades pedidas; devuelve null si no se pidió ninguna.
+     * Lanza IllegalArgumentException si alguna no es una propiedad de WeatherMeasurement.
+     */
+    public static FieldProjection parse(Collection<String> requested) {
+        if (requested == null || requested.isEmpty()) {
+            return null;
+        }
+
+        Set<String> properties = new LinkedHashSet<>(ALWAYS_INCLUDED);
+        Set<String> columns = new LinkedHashSet<>();
+        List<String> unknown = new ArrayList<>();
+
+        for (String name : requested) {
+            String property = name.trim();
+            if (property.isEmpty() || ALWAYS_INCLUDED.contains(property)) {
+                continue;
+            }
+
+            MeasurementField field = MeasurementField.fromProperty(property);
+            if (field != null) {
+                columns.add(field.getColumn());
+            } else if (BAR_TREND_PROPERTY.equals(property)) {
+                columns.add(BAR_TREND_COLUMN);
+            } else {
+                unknown.add(property);
+                continue;
+            }
+            properties.add(property);
+        }
+
+        if (!unknown.isEmpty()) {
+            throw new IllegalArgumentException("Unknown fields: " + String.join(", ", unknown));
+        }
+        return new FieldProjection(properties, columns);
+    }
+
+    /**
+     * Propiedades JSON a serializar
+     */
+    public Set<String> getProperties() {
+        return properties;
+    }
+
+    /**
+     * Columnas _field de InfluxDB a consultar
+     */
+    public Set<String> getColumns() {
+        return columns;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof FieldProjection other && properties.equals(other.properties);
+    }
+
+    @Override
+    public int hashCode() {
+        return properties.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return String.join(",", properties);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,202 @@
+package com.weather.model;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Campos numéricos de WeatherMeasurement y su columna correspondiente en InfluxDB
+ */
+public enum MeasurementField {
+
+    // Temperatura
+    TEMP("temp", WeatherMeasurement.WeatherMeasurementBuilder::temp, WeatherMeasurement::getTemp),
+    TEMP_IN("temp_in", WeatherMeasurement.WeatherMeasurementBuilder::tempIn, WeatherMeasurement::getTempIn),
+    DEW_POINT("dew_point", WeatherMeasurement.WeatherMeasurementBuilder::dewPoint, WeatherMeasurement::getDewPoint),
+    DEW_POINT_IN("dew_point_in", WeatherMeasurement.WeatherMeasurementBuilder::dewPointIn, WeatherMeasurement::getDewPointIn),
+    HEAT_INDEX("heat_index", WeatherMeasurement.WeatherMeasurementBuilder::heatIndex, WeatherMeasurement::getHeatIndex),
+    HEAT_INDEX_IN("heat_index_in", WeatherMeasurement.WeatherMeasurementBuilder::heatIndexIn, WeatherMeasurement::getHeatIndexIn),
+    WIND_CHILL("wind_chill", WeatherMeasurement.WeatherMeasurementBuilder::windChill, WeatherMeasurement::getWindChill),
+    WET_BULB("wet_bulb", WeatherMeasurement.WeatherMeasurementBuilder::wetBulb, WeatherMeasurement::getWetBulb),
+    WET_BULB_IN("wet_bulb_in", WeatherMeasurement.WeatherMeasurementBuilder::wetBulbIn, WeatherMeasurement::getWetBulbIn),
+    THW_INDEX("thw_index", WeatherMeasurement.WeatherMeasurementBuilder::thwIndex, WeatherMeasurement::getThwIndex),
+    THSW_INDEX("thsw_index", WeatherMeasurement.WeatherMeasurementBuilder::thswIndex, WeatherMeasurement::getThswIndex),
+
+    // Humedad
+    HUM("hum", WeatherMeasurement.WeatherMeasurementBuilder::hum, WeatherMeasurement::getHum),
+    HUM_IN("hum_in", WeatherMeasurement.WeatherMeasurementBuilder::humIn, WeatherMeasurement::getHumIn),
+
+    // Presión
+    BAR_ABSOLUTE("bar_absolute", WeatherMeasurement.WeatherMeasurementBuilder::barAbsolute, WeatherMeasurement::getBarAbsolute),
+    BAR_SEA_LEVEL("bar_sea_level", WeatherMeasurement.WeatherMeasurementBuilder::barSeaLevel, WeatherMeasurement::getBarSeaLevel),
+    BAR_OFFSET("bar_offset", WeatherMeasurement.WeatherMeasurementBuilder::barOffset, WeatherMeasurement::getBarOffset),
+
+    // Viento
+    WIND_SPEED_LAST("wind_speed_last", WeatherMeasurement.WeatherMeasurementBuilder::windSpeedLast, WeatherMeasurement::getWindSpeedLast),
+    WIND_SPEED_AVG_LAST_1_MIN("wind_speed_avg_last_1_min", WeatherMeasurement.WeatherMeasurementBuilder::windSpeedAvgLast1Min, WeatherMeasurement::getWindSpeedAvgLast1Min),
+    WIND_SPEED_AVG_LAST_2_MIN("wind_speed_avg_last_2_min", WeatherMeasurement.WeatherMeasurementBuilder::windSpeedAvgLast2Min, WeatherMeasurement::getWindSpeedAvgLast2Min),
+    WIND_SPEED_AVG_LAST_10_MIN("wind_speed_avg_last_10_min", WeatherMeasurement.WeatherMeasurementBuilder::windSpeedAvgLast10Min, WeatherMeasurement::getWindSpeedAvgLast10Min),
+    WIND_SPEED_HI_LAST_2_MIN("wind_speed_hi_last_2_min", WeatherMeasurement.WeatherMeasurementBuilder::windSpeedHiLast2Min, WeatherMeasurement::getWindSpeedHiLast2Min, Aggregation.MAX),
+    WIND_SPEED_HI_LAST_10_MIN("wind_speed_hi_last_10_min", WeatherMeasurement.WeatherMeasurementBuilder::windSpeedHiLast10Min, WeatherMeasurement::getWindSpeedHiLast10Min, Aggregation.MAX),
+    WIND_DIR_LAST("wind_dir_last", WeatherMeasurement.WeatherMeasurementBuilder::windDirLast, WeatherMeasurement::getWindDirLast, Aggregation.LAST),
+    WIND_DIR_SCALAR_AVG_LAST_1_MIN("wind_dir_scalar_avg_last_1_min", WeatherMeasurement.WeatherMeasurementBuilder::windDirScalarAvgLast1Min, WeatherMeasurement::getWindDirScalarAvgLast1Min, Aggregation.LAST),
+    WIND_DIR_SCALAR_AVG_LAST_2_MIN("wind_dir_scalar_avg_last_2_min", WeatherMeasurement.WeatherMeasurementBuilder::windDirScalarAvgLast2Min, WeatherMeasurement::getWindDirScalarAvgLast2Min, Aggregation.LAST),
+    WIND_DIR_SCALAR_AVG_LAST_10_MIN("wind_dir_scalar_avg_last_10_min", WeatherMeasurement.WeatherMeasurementBuilder::windDirScalarAvgLast10Min, WeatherMeasurement::getWindDirScalarAvgLast10Min, Aggregation.LAST),
+    WIND_DIR_AT_HI_SPEED_LAST_2_MIN("wind_dir_at_hi_speed_last_2_min", WeatherMeasurement.WeatherMeasurementBuilder::windDirAtHiSpeedLast2Min, WeatherMeasurement::getWindDirAtHiSpeedLast2Min, Aggregation.LAST),
+    WIND_DIR_AT_HI_SPEED_LAST_10_MIN("wind_dir_at_hi_speed_last_10_min", WeatherMeasurement.WeatherMeasurementBuilder::windDirAtHiSpeedLast10Min, WeatherMeasurement::getWindDirAtHiSpeedLast10Min, Aggregation.LAST),
+    WIND_RUN_DAY("wind_run_day", WeatherMeasurement.WeatherMeasurementBuilder::windRunDay, WeatherMeasurement::getWindRunDay, Aggregation.LAST),
+
+    // Lluvia
+    RAINFALL_DAILY_MM("rainfall_daily_mm", WeatherMeasurement.WeatherMeasurementBuilder::rainfallDailyMm, WeatherMeasurement::getRainfallDailyMm, Aggregation.LAST),
+    RAINFALL_DAILY_IN("rainfall_daily_in", WeatherMeasurement.WeatherMeasurementBuilder::rainfallDailyIn, WeatherMeasurement::getRainfallDailyIn, Aggregation.LAST),
+    RAINFALL_DAY_MM("rainfall_day_mm", WeatherMeasurement.WeatherMeasurementBuilder::rainfallDayMm, WeatherMeasurement::getRainfallDayMm, Aggregation.LAST),
+    RAINFALL_MONTH_MM("rainfall_month_mm", WeatherMeasurement.WeatherMeasurementBuilder::rainfallMonthMm, WeatherMeasurement::getRainfallMonthMm, Aggregation.LAST),
+    RAINFALL_YEAR_MM("rainfall_year_mm", WeatherMeasurement.WeatherMeasurementBuilder::rainfallYearMm, WeatherMeasurement::getRainfallYearMm, Aggregation.LAST),
+    RAINFALL_LAST_15_MIN_MM("rainfall_last_15_min_mm", WeatherMeasurement.WeatherMeasurementBuilder::rainfallLast15MinMm, WeatherMeasurement::getRainfallLast15MinMm, Aggregation.LAST),
+    RAINFALL_LAST_60_MIN_MM("rainfall_last_60_min_mm", WeatherMeasurement.WeatherMeasurementBuilder::rainfallLast60MinMm, WeatherMeasurement::getRainfallLast60MinMm, Aggregation.LAST),
+    RAINFALL_LAST_24_HR_MM("rainfall_last_24_hr_mm", WeatherMeasurement.WeatherMeasurementBuilder::rainfallLast24HrMm, WeatherMeasurement::getRainfallLast24HrMm, Aggregation.LAST),
+    RAIN_RATE_LAST_MM("rain_rate_last_mm", WeatherMeasurement.WeatherMeasurementBuilder::rainRateLastMm, WeatherMeasurement::getRainRateLastMm),
+    RAIN_RATE_HI_MM("rain_rate_hi_mm", WeatherMeasurement.WeatherMeasurementBuilder::rainRateHiMm, WeatherMeasurement::getRainRateHiMm, Aggregation.MAX),
+    RAIN_RATE_HI_LAST_15_MIN_MM("rain_rate_hi_last_15_min_mm", WeatherMeasurement.WeatherMeasurementBuilder::rainRateHiLast15MinMm, WeatherMeasurement::getRainRateHiLast15MinMm, Aggregation.MAX),
+
+    // Radiación solar y UV
+    SOLAR_RAD("solar_rad", WeatherMeasurement.WeatherMeasurementBuilder::solarRad, WeatherMeasurement::getSolarRad),
+    SOLAR_ENERGY_DAY("solar_energy_day", WeatherMeasurement.WeatherMeasurementBuilder::solarEnergyDay, WeatherMeasurement::getSolarEnergyDay, Aggregation.LAST),
+    UV_INDEX("uv_index", WeatherMeasurement.WeatherMeasurementBuilder::uvIndex, WeatherMeasurement::getUvIndex),
+    UV_DOSE_DAY("uv_dose_day", WeatherMeasurement.WeatherMeasurementBuilder::uvDoseDay, WeatherMeasurement::getUvDoseDay, Aggregation.LAST),
+
+    // Evapotranspiración
+    ET_DAY("et_day", WeatherMeasurement.WeatherMeasurementBuilder::etDay, WeatherMeasurement::getEtDay, Aggregation.LAST),
+    ET_MONTH("et_month", WeatherMeasurement.WeatherMeasurementBuilder::etMonth, WeatherMeasurement::getEtMonth, Aggregation.LAST),
+    ET_YEAR("et_year", WeatherMeasurement.WeatherMeasurementBuilder::etYear, WeatherMeasurement::getEtYear, Aggregation.LAST),
+
+    // Ubicación
+    LATITUDE("latitude", WeatherMeasurement.WeatherMeasurementBuilder::latitude, WeatherMeasurement::getLatitude, Aggregation.LAST),
+    LONGITUDE("longitude", WeatherMeasurement.WeatherMeasurementBuilder::longitude, WeatherMeasurement::getLongitude, Aggregation.LAST),
+    ELEVATION("elevation", WeatherMeasurement.WeatherMeasurementBuilder::elevation, WeatherMeasurement::getElevation, Aggregation.LAST);
+
+    private static final Map<String, MeasurementField> BY_COLUMN;
+    private static final Map<String, MeasurementField> BY_PROPERTY;
+
+    static {
+        Map<String, MeasurementField> byColumn = new HashMap<>();
+        Map<String, MeasurementField> byProperty = new HashMap<>();
+        for (MeasurementField field : values()) {
+            byColumn.put(field.column, field);
+            byProperty.put(field.property, field);
+        }
+        BY_COLUMN = Collections.unmodifiableMap(byColumn);
+        BY_PROPERTY = Collections.unmodifiableMap(byProperty);
+    }
+
+    private final String column;
+    private final String property;
+    private final BiConsumer<WeatherMeasurement.WeatherMeasurementBuilder, Double> setter;
+    private final Function<WeatherMeasurement, Double> getter;
+    private final Aggregation aggregation;
+
+    MeasurementField(String column,
+                     BiConsumer<WeatherMeasurement.WeatherMeasurementBuilder, Double> setter,
+                     Function<WeatherMeasurement, Double> getter) {
+        this(column, setter, getter, Aggregation.MEAN);
+    }
+
+    MeasurementField(String column,
+                     BiConsumer<WeatherMeasurement.WeatherMeasurementBuilder, Double> setter,
+                     Function<WeatherMeasurement, Double> getter,
+                     Aggregation aggregation) {
+        this.column = column;
+        this.property = toProperty(column);
+        this.setter = setter;
+        this.getter = getter;
+        this.aggregation = aggregation;
+    }
+
+    /**
+     * Nombre del campo en InfluxDB
+     */
+    public String getColumn() {
+        return column;
+    }
+
+    /**
+     * Nombre de la propiedad en WeatherMeasurement y en el JSON (la columna en camelCase)
+     */
+    public String getProperty() {
+        return property;
+    }
+
+    /**
+     * Función con la que se agregan los valores del campo al reducir la resolución
+     */
+    public Aggregation getAggregation() {
+        return aggregation;
+    }
+
+    /**
+     * Asigna el valor al builder de la medición
+     */
+    public void set(WeatherMeasurement.WeatherMeasurementBuilder builder, double value) {
+        setter.accept(builder, value);
+    }
+
+    /**
+     * Lee el valor del campo en la medición; null si no está informado
+     */
+    public Double get(WeatherMeasurement measurement) {
+        return getter.apply(measurement);
+    }
+
+    /**
+     * Busca el campo asociado a una columna de InfluxDB, o null si la columna no es un campo numérico
+     */
+    public static MeasurementField fromColumn(String column) {
+        return BY_COLUMN.get(column);
+    }
+
+    /**
+     * Busca el campo asociado a una propiedad JSON, o null si no es un campo numérico
+     */
+    public static MeasurementField fromProperty(String property) {
+        return BY_PROPERTY.get(property);
+    }
+
+    private static String toProperty(String column) {
+        StringBuilder property = new StringBuilder(column.length());
+        boolean upper = false;
+        for (char c : column.toCharArray()) {
+            if (c == '_') {
+                upper = true;
+            } else {
+                property.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            }
+        }
+        return property.toString();
+    }
+
+    /**
+     * Función de agregación de un campo: promedio para magnitudes instantáneas, máximo para ráfagas
+     * e intensidades máximas, y último valor para contadores acumulados y direcciones
+     */
+    public enum Aggregation {
+        MEAN("mean"),
+        MAX("max"),
+        LAST("last");
+
+        private final String function;
+
+        Aggregation(String function) {
+            this.function = function;
+        }
+
+        /**
+         * Nombre de la función Flux equivalente
+         */
+        public String getFunction() {
+            return function;
+        }
+    }
+}
\ No newline at end of file
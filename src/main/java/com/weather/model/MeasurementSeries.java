@@ -0,0 +1,418 @@
+package com.weather.model;
+
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Serie temporal de mediciones de una estación almacenada por columnas con tipos primitivos:
+ * un long[] con los timestamps en nanosegundos y un double[] por campo, con NaN para los valores ausentes.
+ * Las columnas de campos que nunca aparecen no se reservan; el bitmap de presencia indica qué campos tienen
+ * valor en las filas visibles, así que una vista puede tener una columna reservada sin marcarla presente.
+ * Los objetos WeatherMeasurement solo se crean al leer la vista, típicamente al serializar.
+ *
+ * Una instancia es inmutable para sus lectores: solo ve las filas [start, end) de los arreglos.
+ * {@link #append} puede reutilizar la capacidad libre de los arreglos más allá de end, por lo que
+ * solo debe invocarse sobre la instancia más reciente y desde un único hilo escritor.
+ */
+public final class MeasurementSeries {
+
+    private static final MeasurementField[] FIELDS = MeasurementField.values();
+    private static final int MIN_CAPACITY = 16;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final String stationId;
+    private final long[] timestamps;
+    private final double[][] columns;
+    private final long presence;
+    private final String[] stationNames;
+    private final String[] barTrends;
+    private final int start;
+    private final int end;
+
+    private MeasurementSeries(String stationId, long[] timestamps, double[][] columns, long presence,
+                              String[] stationNames, String[] barTrends, int start, int end) {
+        this.stationId = stationId;
+        this.timestamps = timestamps;
+        this.columns = columns;
+        this.presence = presence;
+        this.stationNames = stationNames;
+        this.barTrends = barTrends;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Crea una serie vacía
+     */
+    public static MeasurementSeries empty(String stationId) {
+        return new MeasurementSeries(stationId, new long[0], new double[FIELDS.length][], 0L,
+                new String[0], null, 0, 0);
+    }
+
+    /**
+     * Crea una serie a partir de mediciones ordenadas por tiempo
+     */
+    public static MeasurementSeries of(String stationId, List<WeatherMeasurement> measurements) {
+        return empty(stationId).append(measurements, Instant.MIN);
+    }
+
+    /**
+     * Devuelve la serie que respalda la lista si es una vista {@link #asMeasurements()} de la misma estación,
+     * sin copiarla; si no, crea una serie con {@link #of}. El resultado es de solo lectura: puede ser una vista
+     * de una serie ajena, sobre la que no se debe invocar {@link #append}.
+     */
+    public static MeasurementSeries from(String stationId, List<WeatherMeasurement> measurements) {
+        if (measurements instanceof MeasurementSeries.MeasurementList list
+                && list.series().stationId.equals(stationId)) {
+            return list.series();
+        }
+        return of(stationId, measurements);
+    }
+
+    public String getStationId() {
+        return stationId;
+    }
+
+    /**
+     * Número de filas visibles
+     */
+    public int size() {
+        return end - start;
+    }
+
+    public boolean isEmpty() {
+        return end == start;
+    }
+
+    /**
+     * Timestamp de la fila en nanosegundos desde epoch
+     */
+    public long timestampNanos(int row) {
+        return timestamps[start + row];
+    }
+
+    public Instant timestamp(int row) {
+        return toInstant(timestamps[start + row]);
+    }
+
+    /**
+     * Indica si el campo tiene valor en alguna fila visible de la serie
+     */
+    public boolean hasField(MeasurementField field) {
+        return (presence & (1L << field.ordinal())) != 0;
+    }
+
+    /**
+     * Valor del campo en la fila, o NaN si no está informado
+     */
+    public double value(MeasurementField field, int row) {
+        double[] column = columns[field.ordinal()];
+        return column != null ? column[start + row] : Double.NaN;
+    }
+
+    /**
+     * Indica si la serie guarda la tendencia barométrica
+     */
+    public boolean hasBarTrend() {
+        return barTrends != null;
+    }
+
+    /**
+     * Tendencia barométrica de la fila, o null si no está informada
+     */
+    public String barTrend(int row) {
+        return barTrends != null ? barTrends[start + row] : null;
+    }
+
+    /**
+     * Crea la medición de una fila
+     */
+    public WeatherMeasurement get(int row) {
+        int index = start + row;
+        WeatherMeasurement.WeatherMeasurementBuilder builder = WeatherMeasurement.builder()
+                .stationId(stationId)
+                .stationName(stationNames[index])
+                .timestamp(toInstant(timestamps[index]));
+
+        if (barTrends != null) {
+            builder.barTrend(barTrends[index]);
+        }
+        for (MeasurementField field : FIELDS) {
+            double[] column = columns[field.ordinal()];
+            if (column != null && !Double.isNaN(column[index])) {
+                field.set(builder, column[index]);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Vista de las filas con timestamp igual o posterior al indicado; comparte los arreglos
+     * y recalcula qué campos tienen valor en las filas visibles
+     */
+    public MeasurementSeries since(Instant from) {
+        int index = indexAtOrAfter(toNanos(from));
+        if (index == start) {
+            return this;
+        }
+        return new MeasurementSeries(stationId, timestamps, columns, presenceBetween(index, end),
+                stationNames, barTrends, index, end);
+    }
+
+    /**
+     * Vista de las filas con timestamp anterior al indicado; comparte los arreglos
+     * y recalcula qué campos tienen valor en las filas visibles
+     */
+    public MeasurementSeries until(Instant to) {
+        int index = indexAtOrAfter(toNanos(to));
+        if (index == end) {
+            return this;
+        }
+        return new MeasurementSeries(stationId, timestamps, columns, presenceBetween(start, index),
+                stationNames, barTrends, start, index);
+    }
+
+    /**
+     * Nueva serie compacta con las filas indicadas, que deben estar en orden creciente
+     */
+    public MeasurementSeries select(int[] rows) {
+        int count = rows.length;
+        long[] newTimestamps = new long[count];
+        String[] newStationNames = new String[count];
+        String[] newBarTrends = barTrends != null ? new String[count] : null;
+        for (int i = 0; i < count; i++) {
+            int index = start + rows[i];
+            newTimestamps[i] = timestamps[index];
+            newStationNames[i] = stationNames[index];
+            if (newBarTrends != null) {
+                newBarTrends[i] = barTrends[index];
+            }
+        }
+
+        double[][] newColumns = new double[FIELDS.length][];
+        long newPresence = 0L;
+        for (MeasurementField field : FIELDS) {
+            double[] column = columns[field.ordinal()];
+            if (column == null) {
+                continue;
+            }
+            double[] selected = new double[count];
+            boolean present = false;
+            for (int i = 0; i < count; i++) {
+                selected[i] = column[start + rows[i]];
+                present |= !Double.isNaN(selected[i]);
+            }
+            if (present) {
+                newColumns[field.ordinal()] = selected;
+                newPresence |= 1L << field.ordinal();
+            }
+        }
+
+        return new MeasurementSeries(stationId, newTimestamps, newColumns, newPresence,
+                newStationNames, newBarTrends, 0, count);
+    }
+
+    /**
+     * Vista de la serie como lista de mediciones que se crean al acceder a cada elemento
+     */
+    public List<WeatherMeasurement> asMeasurements() {
+        return new MeasurementList();
+    }
+
+    /**
+     * Devuelve una nueva serie con las filas posteriores a la última conocida añadidas al final
+     * y sin las filas anteriores al corte. Las filas con timestamp igual o anterior al último, o anterior
+     * al corte, se ignoran.
+     */
+    public MeasurementSeries append(List<WeatherMeasurement> measurements, Instant cutoff) {
+        long cutoffNanos = toNanos(cutoff);
+        int newStart = Math.max(start, indexAtOrAfter(cutoffNanos));
+        long last = end > start ? timestamps[end - 1] : Long.MIN_VALUE;
+        if (cutoffNanos != Long.MIN_VALUE) {
+            last = Math.max(last, cutoffNanos - 1);
+        }
+
+        int added = 0;
+        // Si el corte descarta filas, los campos que solo aparecían en ellas dejan de estar presentes
+        long newPresence = newStart == start ? presence : presenceBetween(newStart, end);
+        boolean hasBarTrend = barTrends != null;
+        for (WeatherMeasurement measurement : measurements) {
+            if (toNanos(measurement.getTimestamp()) > last) {
+                added++;
+                newPresence |= presenceOf(measurement);
+                hasBarTrend |= measurement.getBarTrend() != null;
+            }
+        }
+
+        if (added == 0) {
+            return newStart == start ? this
+                    : new MeasurementSeries(stationId, timestamps, columns, newPresence, stationNames, barTrends,
+                    newStart, end);
+        }
+
+        // Si no hay capacidad libre se copian solo las filas vivas a arreglos nuevos
+        int live = end - newStart;
+        boolean grow = end + added > timestamps.length;
+        int capacity = grow ? Math.max(MIN_CAPACITY, (live + added) * 2) : timestamps.length;
+        int offset = grow ? newStart : 0;
+        int from = newStart - offset;
+        int to = end - offset;
+
+        long[] newTimestamps = grow ? copyRange(timestamps, newStart, end, capacity) : timestamps;
+        String[] newStationNames = grow ? copyRange(stationNames, newStart, end, capacity) : stationNames;
+        String[] newBarTrends = !hasBarTrend ? null
+                : barTrends == null ? new String[capacity]
+                : grow ? copyRange(barTrends, newStart, end, capacity) : barTrends;
+
+        double[][] newColumns = new double[FIELDS.length][];
+        for (MeasurementField field : FIELDS) {
+            int ordinal = field.ordinal();
+            double[] column = columns[ordinal];
+            if (column == null && (newPresence & (1L << ordinal)) != 0) {
+                column = new double[capacity];
+                Arrays.fill(column, Double.NaN);
+            } else if (column != null && grow) {
+                column = copyRange(column, newStart, end, capacity);
+            }
+            newColumns[ordinal] = column;
+        }
+
+        int row = to;
+        for (WeatherMeasurement measurement : measurements) {
+            long nanos = toNanos(measurement.getTimestamp());
+            if (nanos <= last) {
+                continue;
+            }
+            last = nanos;
+            newTimestamps[row] = nanos;
+            newStationNames[row] = measurement.getStationName();
+            if (newBarTrends != null) {
+                newBarTrends[row] = measurement.getBarTrend();
+            }
+            for (MeasurementField field : FIELDS) {
+                double[] column = newColumns[field.ordinal()];
+                if (column != null) {
+                    Double value = field.get(measurement);
+                    column[row] = value != null ? value : Double.NaN;
+                }
+            }
+            row++;
+        }
+
+        return new MeasurementSeries(stationId, newTimestamps, newColumns, newPresence,
+                newStationNames, newBarTrends, from, row);
+    }
+
+    /**
+     * Memoria aproximada que retienen los arreglos de la serie, en bytes
+     */
+    public long retainedBytes() {
+        long bytes = 8L * timestamps.length + 4L * stationNames.length;
+        if (barTrends != null) {
+            bytes += 4L * barTrends.length;
+        }
+        for (double[] column : columns) {
+            if (column != null) {
+                bytes += 8L * column.length;
+            }
+        }
+        return bytes;
+    }
+
+    private int indexAtOrAfter(long nanos) {
+        int index = Arrays.binarySearch(timestamps, start, end, nanos);
+        if (index < 0) {
+            return -index - 1;
+        }
+        // Los timestamps son únicos dentro de la serie
+        return index;
+    }
+
+    /**
+     * Campos presentes que tienen algún valor en las filas [from, to) de los arreglos; la búsqueda
+     * de cada columna termina en el primer valor informado
+     */
+    private long presenceBetween(int from, int to) {
+        long mask = 0L;
+        for (MeasurementField field : FIELDS) {
+            int ordinal = field.ordinal();
+            double[] column = columns[ordinal];
+            if ((presence & (1L << ordinal)) == 0 || column == null) {
+                continue;
+            }
+            for (int row = from; row < to; row++) {
+                if (!Double.isNaN(column[row])) {
+                    mask |= 1L << ordinal;
+                    break;
+                }
+            }
+        }
+        return mask;
+    }
+
+    private static long presenceOf(WeatherMeasurement measurement) {
+        long mask = 0L;
+        for (MeasurementField field : FIELDS) {
+            if (field.get(measurement) != null) {
+                mask |= 1L << field.ordinal();
+            }
+        }
+        return mask;
+    }
+
+    private static long toNanos(Instant instant) {
+        if (instant.equals(Instant.MIN)) {
+            return Long.MIN_VALUE;
+        }
+        return instant.getEpochSecond() * NANOS_PER_SECOND + instant.getNano();
+    }
+
+    private static Instant toInstant(long nanos) {
+        return Instant.ofEpochSecond(Math.floorDiv(nanos, NANOS_PER_SECOND), Math.floorMod(nanos, NANOS_PER_SECOND));
+    }
+
+    private static long[] copyRange(long[] source, int from, int to, int capacity) {
+        long[] copy = new long[capacity];
+        System.arraycopy(source, from, copy, 0, to - from);
+        return copy;
+    }
+
+    private static double[] copyRange(double[] source, int from, int to, int capacity) {
+        double[] copy = new double[capacity];
+        System.arraycopy(source, from, copy, 0, to - from);
+        Arrays.fill(copy, to - from, capacity, Double.NaN);
+        return copy;
+    }
+
+    private static String[] copyRange(String[] source, int from, int to, int capacity) {
+        String[] copy = new String[capacity];
+        System.arraycopy(source, from, copy, 0, to - from);
+        return copy;
+    }
+
+    /**
+     * Lista de solo lectura que materializa cada medición al accederla
+     */
+    private final class MeasurementList extends AbstractList<WeatherMeasurement> implements RandomAccess {
+
+        private MeasurementSeries series() {
+            return MeasurementSeries.this;
+        }
+
+        @Override
+        public WeatherMeasurement get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size());
+            }
+            return MeasurementSeries.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return MeasurementSeries.this.size();
+        }
+    }
+}
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.weather.model;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -14,6 +15,7 @@ import java.time.Instant;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
+@JsonFilter(FieldProjection.FILTER_ID)
 public class WeatherMeasurement {
 
     private String stationId;
@@ -0,0 +1,365 @@
+package com.weather.repository;
+
+import com.weather.model.MeasurementField;
+import com.weather.model.WeatherMeasurement;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Parser del CSV anotado que devuelve InfluxDB, alimentado línea a línea desde queryRaw.
+ * Escribe los valores directamente en los builders del ensamblador sin crear FluxRecord ni mapas por fila:
+ * cada encabezado de tabla se compila una vez en un arreglo con el tipo de cada columna, y en las filas
+ * solo se extraen las columnas que corresponden a campos de WeatherMeasurement.
+ * Admite tanto tablas pivotadas (una columna por campo) como el formato largo _field/_value del pivot
+ * en el cliente. Las tablas de error (columnas error y reference) se convierten en una excepción.
+ */
+final class AnnotatedCsvParser {
+
+    private static final int IGNORED = 0;
+    private static final int TIME = 1;
+    private static final int STATION_ID = 2;
+    private static final int STATION_NAME = 3;
+    private static final int BAR_TREND = 4;
+    private static final int FIELD = 5;
+    private static final int ERROR = 6;
+    private static final int FIELD_NAME = 7;
+    private static final int VALUE = 8;
+
+    private final MeasurementAssembler assembler;
+
+    private String[] datatypes;
+    private String[] defaults;
+    private boolean headerExpected = true;
+
+    private int[] kinds = new int[0];
+    private MeasurementField[] fields = new MeasurementField[0];
+    private int timeColumn = -1;
+    private int stationColumn = -1;
+    private boolean errorTable;
+
+    private int fieldNameColumn = -1;
+    private int valueColumn = -1;
+    private boolean numericValue;
+    private String lastFieldName;
+    private MeasurementField lastField;
+
+    private int[] starts = new int[64];
+    private int[] ends = new int[64];
+    private boolean[] quoted = new boolean[64];
+    private int columnCount;
+
+    private StringBuilder pending;
+
+    AnnotatedCsvParser(MeasurementAssembler assembler) {
+        this.assembler = assembler;
+    }
+
+    /**
+     * Procesa una línea de la respuesta
+     */
+    void line(String rawLine) {
+        String line = rawLine.endsWith("\r") ? rawLine.substring(0, rawLine.length() - 1) : rawLine;
+
+        // Un valor entre comillas puede contener saltos de línea: se acumula hasta cerrar las comillas
+        if (pending != null) {
+            pending.append('\n').append(line);
+            if (hasOpenQuote(pending)) {
+                return;
+            }
+            line = pending.toString();
+            pending = null;
+        } else if (line.indexOf('"') >= 0 && hasOpenQuote(line)) {
+            pending = new StringBuilder(line);
+            return;
+        }
+
+        if (line.isEmpty()) {
+            // Línea en blanco: termina la tabla y la siguiente trae sus propias anotaciones y encabezado
+            headerExpected = true;
+            datatypes = null;
+            defaults = null;
+            return;
+        }
+
+        split(line);
+
+        if (line.charAt(0) == '#') {
+            String annotation = value(line, 0);
+            if ("#datatype".equals(annotation)) {
+                datatypes = values(line);
+            } else if ("#default".equals(annotation)) {
+                defaults = values(line);
+            }
+            headerExpected = true;
+            return;
+        }
+
+        if (headerExpected) {
+            compileHeader(line);
+            headerExpected = false;
+            return;
+        }
+
+        if (errorTable) {
+            throw new IllegalStateException("InfluxDB query failed: " + errorMessage(line));
+        }
+        row(line);
+    }
+
+    /**
+     * Indica el fin de la respuesta; falla si quedó un valor entre comillas sin cerrar
+     */
+    void finish() {
+        if (pending != null) {
+            throw new IllegalStateException("Truncated InfluxDB CSV response: unterminated quoted value");
+        }
+    }
+
+    private void compileHeader(String line) {
+        kinds = new int[columnCount];
+        fields = new MeasurementField[columnCount];
+        timeColumn = -1;
+        stationColumn = -1;
+        errorTable = false;
+        fieldNameColumn = -1;
+        valueColumn = -1;
+
+        for (int i = 0; i < columnCount; i++) {
+            String column = value(line, i);
+            switch (column) {
+                case "_time" -> {
+                    kinds[i] = TIME;
+                    timeColumn = i;
+                }
+                case "station_id" -> {
+                    kinds[i] = STATION_ID;
+                    stationColumn = i;
+                }
+                case "_field" -> {
+                    kinds[i] = FIELD_NAME;
+                    fieldNameColumn = i;
+                }
+                case "_value" -> {
+                    kinds[i] = VALUE;
+                    valueColumn = i;
+                    numericValue = isNumeric(i);
+                }
+                case "station_name" -> kinds[i] = STATION_NAME;
+                case "bar_trend" -> kinds[i] = BAR_TREND;
+                case "error" -> {
+                    kinds[i] = ERROR;
+                    errorTable = true;
+                }
+                default -> {
+                    MeasurementField field = MeasurementField.fromColumn(column);
+                    if (field != null && isNumeric(i)) {
+                        kinds[i] = FIELD;
+                        fields[i] = field;
+                    }
+                }
+            }
+        }
+    }
+
+    private void row(String line) {
+        if (timeColumn < 0 || stationColumn < 0 || columnCount != kinds.length) {
+            return;
+        }
+
+        String time = valueOrDefault(line, timeColumn);
+        String stationId = valueOrDefault(line, stationColumn);
+        if (time == null || stationId == null) {
+            return;
+        }
+
+        WeatherMeasurement.WeatherMeasurementBuilder builder = assembler.row(stationId, Instant.parse(time));
+
+        for (int i = 0; i < columnCount; i++) {
+            switch (kinds[i]) {
+                case FIELD -> {
+                    if (ends[i] > starts[i]) {
+                        fields[i].set(builder, parseDouble(line.substring(starts[i], ends[i])));
+                    } else if (defaults != null && i < defaults.length && !defaults[i].isEmpty()) {
+                        fields[i].set(builder, parseDouble(defaults[i]));
+                    }
+                }
+                case STATION_NAME -> {
+                    String stationName = valueOrDefault(line, i);
+                    if (stationName != null) {
+                        builder.stationName(stationName);
+                    }
+                }
+                case BAR_TREND -> {
+                    String barTrend = valueOrDefault(line, i);
+                    if (barTrend != null) {
+                        builder.barTrend(barTrend);
+                    }
+                }
+                default -> {
+                    // Columna sin correspondencia en WeatherMeasurement
+                }
+            }
+        }
+
+        if (fieldNameColumn >= 0 && valueColumn >= 0) {
+            longValue(line, builder);
+        }
+    }
+
+    /**
+     * Formato largo: el nombre del campo está en _field y su valor en _value
+     */
+    private void longValue(String line, WeatherMeasurement.WeatherMeasurementBuilder builder) {
+        int start = starts[fieldNameColumn];
+        int length = ends[fieldNameColumn] - start;
+
+        // Las filas de una tabla comparten _field, así que casi siempre coincide con el anterior
+        if (lastFieldName == null || lastFieldName.length() != length
+                || !line.regionMatches(start, lastFieldName, 0, length)) {
+            lastFieldName = value(line, fieldNameColumn);
+            lastField = MeasurementField.fromColumn(lastFieldName);
+        }
+
+        String value = valueOrDefault(line, valueColumn);
+        if (value == null) {
+            return;
+        }
+        if (lastField != null && numericValue) {
+            lastField.set(builder, parseDouble(value));
+        } else if ("bar_trend".equals(lastFieldName)) {
+            builder.barTrend(value);
+        }
+    }
+
+    private String errorMessage(String line) {
+        for (int i = 0; i < columnCount && i < kinds.length; i++) {
+            if (kinds[i] == ERROR) {
+                return value(line, i);
+            }
+        }
+        return line;
+    }
+
+    /**
+     * Solo se leen como números las columnas cuyo tipo anotado es numérico; sin anotaciones se asume numérico
+     */
+    private boolean isNumeric(int column) {
+        if (datatypes == null || column >= datatypes.length) {
+            return true;
+        }
+        String datatype = datatypes[column];
+        return "double".equals(datatype) || "long".equals(datatype) || "unsignedLong".equals(datatype);
+    }
+
+    /**
+     * Valor de la columna, o su valor por defecto si está vacía. Igual que el cliente de InfluxDB,
+     * un valor vacío entre comillas también toma el valor por defecto.
+     */
+    private String valueOrDefault(String line, int column) {
+        if (ends[column] > starts[column]) {
+            return value(line, column);
+        }
+        if (defaults != null && column < defaults.length && !defaults[column].isEmpty()) {
+            return defaults[column];
+        }
+        return null;
+    }
+
+    /**
+     * Interpreta un número del CSV; InfluxDB escribe los infinitos como +Inf y -Inf
+     */
+    private static double parseDouble(String value) {
+        return switch (value) {
+            case "+Inf" -> Double.POSITIVE_INFINITY;
+            case "-Inf" -> Double.NEGATIVE_INFINITY;
+            default -> Double.parseDouble(value);
+        };
+    }
+
+    private String[] values(String line) {
+        String[] values = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            values[i] = value(line, i);
+        }
+        return values;
+    }
+
+    private String value(String line, int column) {
+        String value = line.substring(starts[column], ends[column]);
+        return quoted[column] && value.indexOf('"') >= 0 ? value.replace("\"\"", "\"") : value;
+    }
+
+    /**
+     * Calcula los límites de cada columna de la línea en arreglos reutilizables; las comillas externas
+     * de un valor quedan fuera de sus límites
+     */
+    private void split(String line) {
+        int column = 0;
+        int i = 0;
+        int length = line.length();
+
+        while (true) {
+            ensureCapacity(column + 1);
+            if (i < length && line.charAt(i) == '"') {
+                int start = i + 1;
+                int j = start;
+                while (j < length) {
+                    if (line.charAt(j) == '"') {
+                        if (j + 1 < length && line.charAt(j + 1) == '"') {
+                            j += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    j++;
+                }
+                starts[column] = start;
+                ends[column] = Math.min(j, length);
+                quoted[column] = true;
+                i = j + 1;
+            } else {
+                int end = line.indexOf(',', i);
+                starts[column] = i;
+                ends[column] = end < 0 ? length : end;
+                quoted[column] = false;
+                i = ends[column];
+            }
+            column++;
+
+            if (i >= length || line.charAt(i) != ',') {
+                break;
+            }
+            i++;
+            if (i == length) {
+                // Coma final: la última columna está vacía
+                ensureCapacity(column + 1);
+                starts[column] = length;
+                ends[column] = length;
+                quoted[column] = false;
+                column++;
+                break;
+            }
+        }
+        columnCount = column;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > starts.length) {
+            int newLength = Math.max(capacity, starts.length * 2);
+            starts = Arrays.copyOf(starts, newLength);
+            ends = Arrays.copyOf(ends, newLength);
+            quoted = Arrays.copyOf(quoted, newLength);
+        }
+    }
+
+    private static boolean hasOpenQuote(CharSequence line) {
+        boolean open = false;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == '"') {
+                open = !open;
+            }
+        }
+        return open;
+    }
+}
\ No newline at end of file
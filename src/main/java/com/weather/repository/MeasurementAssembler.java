@@ -0,0 +1,177 @@
+package com.weather.repository;
+
+import com.weather.model.WeatherMeasurement;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Agrupa los registros de Flux que pertenecen a la misma fila (estación + instante).
+ * Usa un índice de dos niveles, estación → timestamp en nanosegundos, sin crear claves String por registro.
+ * Las filas de cada estación se mantienen ordenadas por tiempo: como las consultas ya piden a Flux
+ * ordenar por _time, el caso normal es añadir al final o fusionar con la última fila.
+ * Con el pivot en el cliente llega una tabla ordenada por tiempo por cada campo; cada tabla se fusiona
+ * recorriendo las filas existentes con un cursor, como en un merge de listas ordenadas.
+ *
+ * En modo streaming no acumula: cuando llegan registros de otra estación entrega las filas de la anterior
+ * al consumidor y las descarta. Solo es válido si la consulta devuelve cada estación de forma contigua.
+ */
+final class MeasurementAssembler {
+
+    private final Map<String, StationRows> stations = new HashMap<>();
+    private final List<StationRows> stationOrder = new ArrayList<>();
+    private final BiConsumer<String, List<WeatherMeasurement>> stationConsumer;
+
+    private String lastStationId;
+    private StationRows lastStation;
+
+    MeasurementAssembler() {
+        this(null);
+    }
+
+    /**
+     * Crea un ensamblador en modo streaming que entrega cada estación completa al consumidor
+     */
+    MeasurementAssembler(BiConsumer<String, List<WeatherMeasurement>> stationConsumer) {
+        this.stationConsumer = stationConsumer;
+    }
+
+    /**
+     * Devuelve el builder de la fila de la estación en el instante indicado, creándolo si no existe
+     */
+    WeatherMeasurement.WeatherMeasurementBuilder row(String stationId, Instant time) {
+        StationRows rows = station(stationId);
+        long nanos = time.getEpochSecond() * 1_000_000_000L + time.getNano();
+        return rows.row(nanos, time);
+    }
+
+    /**
+     * Construye las mediciones acumuladas
+     */
+    List<WeatherMeasurement> build() {
+        int total = 0;
+        for (StationRows rows : stationOrder) {
+            total += rows.size;
+        }
+
+        List<WeatherMeasurement> measurements = new ArrayList<>(total);
+        for (StationRows rows : stationOrder) {
+            rows.buildInto(measurements);
+        }
+        return measurements;
+    }
+
+    /**
+     * Entrega al consumidor la estación en curso; en modo streaming debe invocarse al terminar la consulta
+     */
+    void flush() {
+        if (stationConsumer == null || lastStation == null) {
+            return;
+        }
+
+        List<WeatherMeasurement> measurements = new ArrayList<>(lastStation.size);
+        lastStation.buildInto(measurements);
+        String stationId = lastStationId;
+        lastStation = null;
+        lastStationId = null;
+        stationConsumer.accept(stationId, measurements);
+    }
+
+    private StationRows station(String stationId) {
+        // Los registros llegan agrupados por tabla, así que casi siempre es la misma estación que el anterior
+        if (lastStation != null && lastStationId.equals(stationId)) {
+            return lastStation;
+        }
+
+        if (stationConsumer != null) {
+            flush();
+            lastStationId = stationId;
+            lastStation = new StationRows(stationId);
+            return lastStation;
+        }
+
+        StationRows rows = stations.get(stationId);
+        if (rows == null) {
+            rows = new StationRows(stationId);
+            stations.put(stationId, rows);
+            stationOrder.add(rows);
+        }
+
+        lastStationId = stationId;
+        lastStation = rows;
+        return rows;
+    }
+
+    /**
+     * Filas de una estación ordenadas por timestamp
+     */
+    private static final class StationRows {
+
+        private static final int INITIAL_CAPACITY = 64;
+
+        private final String stationId;
+        private long[] times = new long[INITIAL_CAPACITY];
+        private WeatherMeasurement.WeatherMeasurementBuilder[] rows =
+                new WeatherMeasurement.WeatherMeasurementBuilder[INITIAL_CAPACITY];
+        private int size;
+        private int cursor;
+
+        private StationRows(String stationId) {
+            this.stationId = stationId;
+        }
+
+        private WeatherMeasurement.WeatherMeasurementBuilder row(long nanos, Instant time) {
+            // Caso habitual: registros consecutivos en orden temporal
+            if (size == 0 || nanos > times[size - 1]) {
+                return insert(size, nanos, time);
+            }
+            if (nanos == times[size - 1]) {
+                return rows[size - 1];
+            }
+
+            // Registro de otra tabla de la misma estación: se avanza el cursor mientras la tabla siga en orden
+            // y solo se busca por bisección cuando la tabla vuelve a empezar
+            if (cursor > 0 && times[cursor - 1] >= nanos) {
+                int index = Arrays.binarySearch(times, 0, size, nanos);
+                cursor = index >= 0 ? index : -index - 1;
+            }
+            while (cursor < size && times[cursor] < nanos) {
+                cursor++;
+            }
+            if (times[cursor] == nanos) {
+                return rows[cursor];
+            }
+            return insert(cursor, nanos, time);
+        }
+
+        private WeatherMeasurement.WeatherMeasurementBuilder insert(int index, long nanos, Instant time) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            if (index < size) {
+                System.arraycopy(times, index, times, index + 1, size - index);
+                System.arraycopy(rows, index, rows, index + 1, size - index);
+            }
+
+            WeatherMeasurement.WeatherMeasurementBuilder builder = WeatherMeasurement.builder()
+                    .timestamp(time)
+                    .stationId(stationId);
+            times[index] = nanos;
+            rows[index] = builder;
+            size++;
+            return builder;
+        }
+
+        private void buildInto(List<WeatherMeasurement> measurements) {
+            for (int i = 0; i < size; i++) {
+                measurements.add(rows[i].build());
+            }
+        }
+    }
+}
\ No newline at end of file
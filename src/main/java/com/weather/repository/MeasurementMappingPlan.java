@@ -0,0 +1,92 @@
+package com.weather.repository;
+
+import com.influxdb.query.FluxRecord;
+import com.weather.model.MeasurementField;
+import com.weather.model.WeatherMeasurement;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plan de mapeo de una FluxTable pivotada a WeatherMeasurement.
+ * Se construye una sola vez a partir de las columnas de la tabla y conserva solo las columnas
+ * presentes, de modo que el coste por registro depende de los campos poblados y no del esquema completo.
+ * Con el pivot en el cliente la tabla viene en formato largo y cada registro aporta el campo de _field.
+ */
+final class MeasurementMappingPlan {
+
+    private static final String STATION_NAME = "station_name";
+    private static final String BAR_TREND = "bar_trend";
+    private static final String FIELD = "_field";
+    private static final String VALUE = "_value";
+
+    private final String[] doubleColumns;
+    private final MeasurementField[] doubleFields;
+    private final boolean hasStationName;
+    private final boolean hasBarTrend;
+    private final boolean longFormat;
+
+    private MeasurementMappingPlan(String[] doubleColumns, MeasurementField[] doubleFields,
+                                   boolean hasStationName, boolean hasBarTrend, boolean longFormat) {
+        this.doubleColumns = doubleColumns;
+        this.doubleFields = doubleFields;
+        this.hasStationName = hasStationName;
+        this.hasBarTrend = hasBarTrend;
+        this.longFormat = longFormat;
+    }
+
+    /**
+     * Construye el plan a partir de la lista de columnas de la tabla
+     */
+    static MeasurementMappingPlan forColumns(Collection<String> columns) {
+        List<String> presentColumns = new ArrayList<>();
+        List<MeasurementField> presentFields = new ArrayList<>();
+
+        for (String column : columns) {
+            MeasurementField field = MeasurementField.fromColumn(column);
+            if (field != null) {
+                presentColumns.add(column);
+                presentFields.add(field);
+            }
+        }
+
+        return new MeasurementMappingPlan(
+                presentColumns.toArray(new String[0]),
+                presentFields.toArray(new MeasurementField[0]),
+                columns.contains(STATION_NAME),
+                columns.contains(BAR_TREND),
+                columns.contains(FIELD) && columns.contains(VALUE));
+    }
+
+    /**
+     * Copia los valores del registro al builder usando solo las columnas del plan
+     */
+    void apply(FluxRecord record, WeatherMeasurement.WeatherMeasurementBuilder builder) {
+        Map<String, Object> values = record.getValues();
+
+        if (hasStationName && values.get(STATION_NAME) instanceof String stationName) {
+            builder.stationName(stationName);
+        }
+        if (hasBarTrend && values.get(BAR_TREND) instanceof String barTrend) {
+            builder.barTrend(barTrend);
+        }
+
+        for (int i = 0; i < doubleColumns.length; i++) {
+            if (values.get(doubleColumns[i]) instanceof Number number) {
+                doubleFields[i].set(builder, number.doubleValue());
+            }
+        }
+
+        if (longFormat && values.get(FIELD) instanceof String fieldName) {
+            Object value = values.get(VALUE);
+            MeasurementField field = MeasurementField.fromColumn(fieldName);
+            if (field != null && value instanceof Number number) {
+                field.set(builder, number.doubleValue());
+            } else if (BAR_TREND.equals(fieldName) && value instanceof String barTrend) {
+                builder.barTrend(barTrend);
+            }
+        }
+    }
+}
\ No newline at end of file
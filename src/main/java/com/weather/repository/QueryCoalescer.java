@@ -0,0 +1,62 @@
+package com.weather.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Agrupa consultas idénticas concurrentes (single-flight): el primer llamante ejecuta la consulta
+ * y los que llegan mientras está en curso esperan y comparten el mismo resultado.
+ * La carga sobre InfluxDB pasa a ser proporcional a las consultas distintas y no al número de usuarios.
+ */
+@Slf4j
+@Component
+public class QueryCoalescer {
+
+    private final ConcurrentMap<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Ejecuta la consulta asociada a la clave, o espera el resultado de una ejecución idéntica en curso
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(Object key, Supplier<T> query) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+
+        if (existing != null) {
+            log.debug("Joining in-flight query for key {}", key);
+            return (T) await(existing);
+        }
+
+        try {
+            T result = query.get();
+            future.complete(result);
+            return result;
+        } catch (Throwable e) {
+            // También los Error (por ejemplo OutOfMemoryError): quienes esperan no deben quedar colgados
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,147 @@
+package com.weather.repository;
+
+import com.influxdb.Cancellable;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Puente entre los callbacks asíncronos del cliente de InfluxDB y el hilo que consume el resultado.
+ * La cola acotada aplica contrapresión: si el consumidor se retrasa, el hilo que lee la respuesta HTTP
+ * se bloquea en lugar de acumular registros en memoria.
+ */
+final class QueryStream<T> {
+
+    private static final Object END = new Object();
+    private static final long OFFER_TIMEOUT_MS = 100;
+
+    private final BlockingQueue<Object> queue;
+    private volatile Cancellable cancellable;
+    private volatile boolean cancelled;
+
+    /**
+     * Marca de fin (END o Failure) que el productor no pudo encolar; el consumidor la toma al vaciar la cola
+     */
+    private volatile Object terminal;
+
+    QueryStream(int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Callback onNext del cliente: encola el elemento, esperando si la cola está llena
+     */
+    void onNext(Cancellable cancellable, T item) {
+        this.cancellable = cancellable;
+        if (cancelled) {
+            cancellable.cancel();
+            return;
+        }
+        if (!put(item) && !cancelled) {
+            // El hilo productor se interrumpió: la consulta no puede continuar
+            cancel();
+            terminate(new Failure(new InterruptedException("Interrupted while reading InfluxDB response")));
+        }
+    }
+
+    /**
+     * Callback onError del cliente
+     */
+    void onError(Throwable error) {
+        terminate(new Failure(error));
+    }
+
+    /**
+     * Callback onComplete del cliente
+     */
+    void onComplete() {
+        terminate(END);
+    }
+
+    /**
+     * Entrega cada elemento al consumidor en el hilo llamante hasta que la consulta termina.
+     * Si el consumidor lanza una excepción la consulta se cancela y la excepción se propaga.
+     */
+    @SuppressWarnings("unchecked")
+    void drain(Consumer<? super T> consumer) {
+        try {
+            while (true) {
+                Object item = queue.poll(OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (item == null) {
+                    // Cola vacía: si el productor dejó una marca de fin sin encolar, se procesa ahora
+                    item = terminal;
+                    if (item == null || !queue.isEmpty()) {
+                        continue;
+                    }
+                }
+                if (item == END) {
+                    return;
+                }
+                if (item instanceof Failure failure) {
+                    throw propagate(failure.error());
+                }
+                consumer.accept((T) item);
+            }
+        } catch (InterruptedException e) {
+            cancel();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading InfluxDB query results", e);
+        } catch (RuntimeException e) {
+            cancel();
+            throw e;
+        }
+    }
+
+    /**
+     * Cancela la consulta en curso y libera al productor si estaba esperando
+     */
+    void cancel() {
+        cancelled = true;
+        Cancellable current = cancellable;
+        if (current != null) {
+            current.cancel();
+        }
+        queue.clear();
+    }
+
+    /**
+     * Encola el elemento esperando mientras la cola esté llena; devuelve false si no se encoló
+     * porque la consulta se canceló o el hilo productor fue interrumpido
+     */
+    private boolean put(Object item) {
+        try {
+            while (!cancelled) {
+                if (queue.offer(item, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+                // La cola está llena: seguimos esperando mientras la consulta no se cancele
+            }
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Entrega la marca de fin al consumidor. Si no puede encolarse se deja en terminal,
+     * que el consumidor revisa cada vez que la cola queda vacía, así drain nunca queda bloqueado.
+     */
+    private void terminate(Object marker) {
+        if (terminal == null && !put(marker)) {
+            terminal = marker;
+        }
+    }
+
+    private static RuntimeException propagate(Throwable error) {
+        if (error instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        return new IllegalStateException("InfluxDB query failed: " + error.getMessage(), error);
+    }
+
+    private record Failure(Throwable error) {
+    }
+}
\ No newline at end of file
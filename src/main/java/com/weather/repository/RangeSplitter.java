@@ -0,0 +1,118 @@
+package com.weather.repository;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+/**
+ * Divide un intervalo de tiempo en tramos acotados (weather.query.chunk-size) y ejecuta una consulta por tramo,
+ * con a lo sumo weather.query.chunk-parallelism tramos en curso por llamada y weather.query.chunk-threads
+ * en total entre todas las llamadas. Los resultados se concatenan en el orden de los tramos, así cada consulta
+ * a InfluxDB tiene un tamaño acotado sin importar el largo del rango. El tamaño del tramo no acota la memoria:
+ * el resultado completo crece con el rango, y el único límite es weather.query.max-days, que el servicio valida
+ * antes de consultar. Si un tramo falla, los que siguen en curso se interrumpen y sus consultas se cancelan.
+ */
+@Slf4j
+@Component
+public class RangeSplitter {
+
+    private final Duration chunkSize;
+    private final int parallelism;
+    private final ExecutorService executor;
+
+    public RangeSplitter(@Value("${weather.query.chunk-size:P1D}") Duration chunkSize,
+                         @Value("${weather.query.chunk-parallelism:2}") int parallelism,
+                         @Value("${weather.query.chunk-threads:8}") int threads) {
+        if (chunkSize.isZero() || chunkSize.isNegative()) {
+            throw new IllegalStateException("weather.query.chunk-size must be positive");
+        }
+        this.chunkSize = chunkSize;
+        this.parallelism = Math.max(1, parallelism);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        // Los tramos que superan el límite global esperan en la cola del pool
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "range-query-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Ejecuta la consulta sobre cada tramo de [start, stop) y concatena los resultados en orden
+     */
+    public <T> List<T> query(Instant start, Instant stop, BiFunction<Instant, Instant, List<T>> chunkQuery) {
+        List<Instant> bounds = new ArrayList<>();
+        for (Instant bound = start; bound.isBefore(stop); bound = bound.plus(chunkSize)) {
+            bounds.add(bound);
+        }
+        bounds.add(stop);
+
+        int chunks = bounds.size() - 1;
+        if (chunks <= 1) {
+            return chunks == 1 ? chunkQuery.apply(start, stop) : Collections.emptyList();
+        }
+
+        log.debug("Splitting range {} - {} into {} chunks", start, stop, chunks);
+
+        // Ventana deslizante: se lanza un tramo nuevo cada vez que se consume el más antiguo
+        Deque<Future<List<T>>> pending = new ArrayDeque<>();
+        List<T> result = new ArrayList<>();
+        int next = 0;
+        try {
+            while (next < chunks || !pending.isEmpty()) {
+                while (next < chunks && pending.size() < parallelism) {
+                    Instant from = bounds.get(next);
+                    Instant to = bounds.get(next + 1);
+                    pending.add(executor.submit(() -> chunkQuery.apply(from, to)));
+                    next++;
+                }
+                result.addAll(await(pending.poll()));
+            }
+        } catch (RuntimeException | Error e) {
+            // La interrupción hace que QueryStream cancele la consulta del tramo en curso
+            pending.forEach(future -> future.cancel(true));
+            throw e;
+        }
+
+        return Collections.unmodifiableList(result);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static <T> List<T> await(Future<List<T>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a range query chunk", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Range query chunk failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+}
\ No newline at end of file
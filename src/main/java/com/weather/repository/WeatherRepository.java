@@ -3,18 +3,31 @@ package com.weather.repository;
 import com.influxdb.client.InfluxDBClient;
 import com.influxdb.client.QueryApi;
 import com.influxdb.query.FluxRecord;
-import com.influxdb.query.FluxTable;
 import com.weather.config.InfluxDBConfig;
+import com.weather.dto.FieldStatistics;
+import com.weather.dto.StationBasicInfo;
+import com.weather.dto.WeatherDataSimple;
+import com.weather.model.MeasurementField;
 import com.weather.model.WeatherMeasurement;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * Repositorio para consultas a InfluxDB
@@ -24,8 +37,38 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class WeatherRepository {
 
+    /**
+     * Registros que el hilo de lectura HTTP puede adelantar al mapeo antes de bloquearse
+     */
+    private static final int STREAM_BUFFER_SIZE = 1024;
+
+    /**
+     * Campos de ubicación, que no forman parte de las series de mediciones
+     */
+    private static final Set<MeasurementField> LOCATION_FIELDS =
+            EnumSet.of(MeasurementField.LATITUDE, MeasurementField.LONGITUDE, MeasurementField.ELEVATION);
+
+    /**
+     * Filtro Flux de los campos que se agregan con cada función; bar_trend es texto y solo admite last()
+     */
+    private static final Map<MeasurementField.Aggregation, String> AGGREGATION_FILTERS = aggregationFilters();
+
     private final InfluxDBClient influxDBClient;
     private final InfluxDBConfig influxDBConfig;
+    private final QueryCoalescer queryCoalescer;
+    private final RangeSplitter rangeSplitter;
+
+    /**
+     * Lee las respuestas como CSV anotado crudo (queryRaw) en lugar de FluxRecord
+     */
+    @Value("${weather.query.raw-csv:false}")
+    private boolean rawCsv;
+
+    /**
+     * Dónde se pivotan las consultas de mediciones: en InfluxDB o en el repositorio
+     */
+    @Value("${weather.query.pivot:server}")
+    private PivotMode pivotMode;
 
     /**
      * Obtiene las mediciones de una estación específica en los últimos N días
@@ -36,28 +79,163 @@ public class WeatherRepository {
               |> range(start: -%dd)
               |> filter(fn: (r) => r["station_id"] == "%s")
               |> filter(fn: (r) => r["_field"] != "elevation" and r["_field"] != "latitude" and r["_field"] != "longitude")
-              |> pivot(rowKey:["_time"], columnKey: ["_field"], valueColumn: "_value")
-              |> sort(columns: ["_time"], desc: false)
-            """, influxDBConfig.getBucket(), days, stationId);
+              %s
+            """, influxDBConfig.getBucket(), days, fluxString(stationId), pivotStage());
 
         return executeQuery(flux);
     }
 
     /**
-     * Obtiene las mediciones de todas las estaciones en los últimos N días
+     * Obtiene las mediciones de todas las estaciones desde el instante indicado (inclusive)
      */
-    public List<WeatherMeasurement> getAllStationsMeasurements(int days) {
+    public List<WeatherMeasurement> getAllStationsMeasurementsSince(Instant start) {
         String flux = String.format("""
             from(bucket: "%s")
-              |> range(start: -%dd)
+              |> range(start: time(v: "%s"))
               |> filter(fn: (r) => r["_field"] != "elevation" and r["_field"] != "latitude" and r["_field"] != "longitude")
-              |> pivot(rowKey:["_time"], columnKey: ["_field"], valueColumn: "_value")
-              |> sort(columns: ["_time"], desc: false)
-            """, influxDBConfig.getBucket(), days);
+              %s
+            """, influxDBConfig.getBucket(), start, pivotStage());
 
         return executeQuery(flux);
     }
 
+    /**
+     * Obtiene las mediciones de una estación en el intervalo [start, stop), dividido en tramos acotados.
+     * Si se indican columnas solo se consultan esos campos.
+     */
+    public List<WeatherMeasurement> getStationMeasurementsBetween(String stationId, Instant start, Instant stop,
+                                                                  Collection<String> columns) {
+        return rangeSplitter.query(start, stop, (from, to) -> {
+            String flux = String.format("""
+                from(bucket: "%s")
+                  |> range(start: time(v: "%s"), stop: time(v: "%s"))
+                  |> filter(fn: (r) => r["station_id"] == "%s")
+                  |> filter(fn: (r) => %s)
+                  %s
+                """, influxDBConfig.getBucket(), from, to, fluxString(stationId), fieldFilter(columns), pivotStage());
+
+            return executeQuery(flux);
+        });
+    }
+
+    /**
+     * Obtiene las mediciones de todas las estaciones en el intervalo [start, stop), dividido en tramos acotados.
+     * Cada tramo devuelve las filas agrupadas por estación, así que una estación puede aparecer en varios grupos.
+     */
+    public List<WeatherMeasurement> getAllStationsMeasurementsBetween(Instant start, Instant stop) {
+        return getAllStationsMeasurementsBetween(start, stop, null);
+    }
+
+    /**
+     * Igual que {@link #getAllStationsMeasurementsBetween(Instant, Instant)}, consultando solo las columnas indicadas
+     */
+    public List<WeatherMeasurement> getAllStationsMeasurementsBetween(Instant start, Instant stop,
+                                                                      Collection<String> columns) {
+        return rangeSplitter.query(start, stop, (from, to) -> {
+            String flux = String.format("""
+                from(bucket: "%s")
+                  |> range(start: time(v: "%s"), stop: time(v: "%s"))
+                  |> filter(fn: (r) => %s)
+                  %s
+                """, influxDBConfig.getBucket(), from, to, fieldFilter(columns), pivotStage());
+
+            return executeQuery(flux);
+        });
+    }
+
+    /**
+     * Recorre las mediciones de todas las estaciones en [start, stop) sin acumular el resultado completo.
+     * Después del pivot la consulta agrupa solo por station_id, así que cada estación llega contigua aunque
+     * haya cambiado de nombre en el intervalo, y el consumidor recibe las filas de una estación en cuanto
+     * empiezan las de la siguiente. El agrupamiento va después del pivot para que las columnas de estación
+     * sigan en las filas. No se divide en tramos ni se comparte entre llamantes; si el consumidor lanza una
+     * excepción la consulta se cancela.
+     */
+    public void streamAllStationsMeasurementsBetween(Instant start, Instant stop, Collection<String> columns,
+                                                     BiConsumer<String, List<WeatherMeasurement>> consumer) {
+        String flux = String.format("""
+            from(bucket: "%s")
+              |> range(start: time(v: "%s"), stop: time(v: "%s"))
+              |> filter(fn: (r) => %s)
+              %s
+              |> group(columns: ["station_id"])
+              |> sort(columns: ["_time"], desc: false)
+            """, influxDBConfig.getBucket(), start, stop, fieldFilter(columns), pivotStage());
+
+        MeasurementAssembler assembler = new MeasurementAssembler(consumer);
+        readMeasurements(flux, assembler);
+        assembler.flush();
+    }
+
+    /**
+     * Obtiene las mediciones de una estación en [start, stop) agregadas en ventanas de la duración indicada.
+     * Un stop nulo equivale a "hasta ahora". Si se indican columnas solo se consultan esos campos.
+     */
+    public List<WeatherMeasurement> getStationMeasurementsAggregated(String stationId, Instant start, Instant stop,
+                                                                     Duration every, Collection<String> columns) {
+        String stationFilter = String.format("|> filter(fn: (r) => r[\"station_id\"] == \"%s\")",
+                fluxString(stationId));
+        return executeQuery(aggregatedFlux(start, stop, stationFilter, every, columns));
+    }
+
+    /**
+     * Obtiene las mediciones de todas las estaciones en [start, stop) agregadas en ventanas de la duración indicada.
+     * Un stop nulo equivale a "hasta ahora". Si se indican columnas solo se consultan esos campos.
+     */
+    public List<WeatherMeasurement> getAllStationsMeasurementsAggregated(Instant start, Instant stop, Duration every,
+                                                                         Collection<String> columns) {
+        return executeQuery(aggregatedFlux(start, stop, "", every, columns));
+    }
+
+    /**
+     * Calcula en InfluxDB el mínimo, máximo, promedio y número de valores de los campos indicados
+     * de una estación en los últimos N días. Devuelve una tabla pequeña con una fila por campo y estadístico,
+     * así la transferencia no depende del largo de la ventana.
+     */
+    public Map<MeasurementField, FieldStatistics> getStationStatistics(String stationId, int days,
+                                                                       Collection<MeasurementField> fields) {
+        String fieldFilter = fields.stream()
+                .map(field -> "r[\"_field\"] == \"" + field.getColumn() + "\"")
+                .collect(Collectors.joining(" or "));
+
+        String flux = String.format("""
+            data = from(bucket: "%s")
+              |> range(start: -%dd)
+              |> filter(fn: (r) => r["station_id"] == "%s")
+              |> filter(fn: (r) => %s)
+              |> group(columns: ["_field"])
+
+            union(tables: [
+                data |> min() |> keep(columns: ["_field", "_value"]) |> set(key: "stat", value: "min"),
+                data |> max() |> keep(columns: ["_field", "_value"]) |> set(key: "stat", value: "max"),
+                data |> mean() |> keep(columns: ["_field", "_value"]) |> set(key: "stat", value: "avg"),
+                data |> count() |> toFloat() |> keep(columns: ["_field", "_value"]) |> set(key: "stat", value: "count")
+            ])
+            """, influxDBConfig.getBucket(), days, fluxString(stationId), fieldFilter);
+
+        return queryCoalescer.execute(flux, () -> {
+            Map<MeasurementField, FieldStatistics> statistics = new EnumMap<>(MeasurementField.class);
+
+            streamQuery(flux, record -> {
+                MeasurementField field = MeasurementField.fromColumn(record.getField());
+                if (field == null || !(record.getValue() instanceof Number value)) {
+                    return;
+                }
+
+                FieldStatistics fieldStats = statistics.computeIfAbsent(field, f -> new FieldStatistics());
+                switch (String.valueOf(record.getValueByKey("stat"))) {
+                    case "min" -> fieldStats.setMin(value.doubleValue());
+                    case "max" -> fieldStats.setMax(value.doubleValue());
+                    case "avg" -> fieldStats.setAvg(value.doubleValue());
+                    case "count" -> fieldStats.setCount(value.longValue());
+                    default -> log.debug("Ignoring unexpected statistic {}", record.getValueByKey("stat"));
+                }
+            });
+
+            return statistics;
+        });
+    }
+
     /**
      * Obtiene la última medición de cada estación
      */
@@ -67,119 +245,101 @@ public class WeatherRepository {
               |> range(start: -1h)
               |> filter(fn: (r) => r["_field"] != "elevation" and r["_field"] != "latitude" and r["_field"] != "longitude")
               |> last()
-              |> pivot(rowKey:["_time"], columnKey: ["_field"], valueColumn: "_value")
-            """, influxDBConfig.getBucket());
+              %s
+            """, influxDBConfig.getBucket(), pivotStage());
 
         return executeQuery(flux);
     }
 
     /**
-     * Obtiene la lista de estaciones activas
+     * Obtiene la última medición de cada estación con datos desde el instante indicado (inclusive)
      */
-    public List<String> getActiveStations() {
+    public List<WeatherMeasurement> getLatestMeasurementsSince(Instant start) {
         String flux = String.format("""
             from(bucket: "%s")
-              |> range(start: -24h)
-              |> filter(fn: (r) => exists r.station_id)
-              |> keep(columns: ["station_id"])
-              |> distinct(column: "station_id")
-            """, influxDBConfig.getBucket());
-
-        QueryApi queryApi = influxDBClient.getQueryApi();
-        List<FluxTable> tables = queryApi.query(flux);
-        List<String> stations = new ArrayList<>();
-
-        for (FluxTable table : tables) {
-            for (FluxRecord record : table.getRecords()) {
-                String stationId = (String) record.getValueByKey("station_id");
-                if (stationId != null && !stations.contains(stationId)) {
-                    stations.add(stationId);
-                }
-            }
-        }
+              |> range(start: time(v: "%s"))
+              |> filter(fn: (r) => r["_field"] != "elevation" and r["_field"] != "latitude" and r["_field"] != "longitude")
+              |> last()
+              %s
+            """, influxDBConfig.getBucket(), start, pivotStage());
 
-        log.debug("Found {} active stations", stations.size());
-        return stations;
+        return executeQuery(flux);
     }
 
     /**
-     * Obtiene información básica de una estación (nombre y coordenadas)
+     * Obtiene la información básica (nombre, coordenadas, elevación y último dato) de todas las estaciones
+     * con datos en los últimos N días en una sola consulta, tomando el último valor de cada serie
      */
-    public Map<String, Object> getStationBasicInfo(String stationId) {
+    public List<StationBasicInfo> getStationsBasicInfo(int days) {
         String flux = String.format("""
             from(bucket: "%s")
-              |> range(start: -24h)
-              |> filter(fn: (r) => r["station_id"] == "%s")
-              |> limit(n: 1)
-            """, influxDBConfig.getBucket(), stationId);
-
-        QueryApi queryApi = influxDBClient.getQueryApi();
-        List<FluxTable> tables = queryApi.query(flux);
-
-        Map<String, Object> info = new HashMap<>();
-
-        for (FluxTable table : tables) {
-            for (FluxRecord record : table.getRecords()) {
-                log.debug("Record values for station {}: {}", stationId, record.getValues());
-
-                info.put("stationId", record.getValueByKey("station_id"));
-                info.put("stationName", record.getValueByKey("station_name"));
+              |> range(start: -%dd)
+              |> filter(fn: (r) => exists r.station_id)
+              |> last()
+              |> keep(columns: ["_time", "station_id", "station_name", "latitude", "longitude", "elevation", "_field", "_value"])
+            """, influxDBConfig.getBucket(), days);
 
-                Object lat = record.getValueByKey("latitude");
-                Object lon = record.getValueByKey("longitude");
-                Object elev = record.getValueByKey("elevation");
+        Map<String, StationBasicInfo> stations = new LinkedHashMap<>();
 
-                log.debug("Latitude raw: {} (type: {})", lat, lat != null ? lat.getClass().getName() : "null");
-                log.debug("Longitude raw: {} (type: {})", lon, lon != null ? lon.getClass().getName() : "null");
-                log.debug("Elevation raw: {} (type: {})", elev, elev != null ? elev.getClass().getName() : "null");
+        streamQuery(flux, record -> {
+            String stationId = (String) record.getValueByKey("station_id");
+            if (stationId == null) {
+                return;
+            }
 
-                if (lat instanceof Number) {
-                    info.put("latitude", ((Number) lat).doubleValue());
-                } else if (lat instanceof String) {
-                    try {
-                        info.put("latitude", Double.parseDouble((String) lat));
-                    } catch (NumberFormatException e) {
-                        log.warn("Cannot parse latitude: {}", lat);
-                    }
-                }
+            StationBasicInfo info = stations.computeIfAbsent(stationId,
+                    id -> StationBasicInfo.builder().stationId(id).build());
 
-                if (lon instanceof Number) {
-                    info.put("longitude", ((Number) lon).doubleValue());
-                } else if (lon instanceof String) {
-                    try {
-                        info.put("longitude", Double.parseDouble((String) lon));
-                    } catch (NumberFormatException e) {
-                        log.warn("Cannot parse longitude: {}", lon);
-                    }
-                }
+            Instant time = record.getTime();
+            if (time != null && (info.getLastSeen() == null || time.isAfter(info.getLastSeen()))) {
+                info.setLastSeen(time);
+            }
 
-                if (elev instanceof Number) {
-                    info.put("elevation", ((Number) elev).doubleValue());
-                } else if (elev instanceof String) {
-                    try {
-                        info.put("elevation", Double.parseDouble((String) elev));
-                    } catch (NumberFormatException e) {
-                        log.warn("Cannot parse elevation: {}", elev);
-                    }
-                }
+            if (info.getStationName() == null && record.getValueByKey("station_name") instanceof String name) {
+                info.setStationName(name);
+            }
 
-                log.debug("Final info map: {}", info);
-                break; // Solo necesitamos un registro
+            // Las coordenadas pueden llegar como tags (columnas) o como campos (_field/_value)
+            String field = record.getField();
+            if (info.getLatitude() == null) {
+                info.setLatitude(toDouble("latitude".equals(field) ? record.getValue() : record.getValueByKey("latitude")));
             }
-        }
+            if (info.getLongitude() == null) {
+                info.setLongitude(toDouble("longitude".equals(field) ? record.getValue() : record.getValueByKey("longitude")));
+            }
+            if (info.getElevation() == null) {
+                info.setElevation(toDouble("elevation".equals(field) ? record.getValue() : record.getValueByKey("elevation")));
+            }
+        });
 
-        return info;
+        log.debug("Found basic info for {} stations", stations.size());
+        return new ArrayList<>(stations.values());
     }
 
     /**
-     * Obtiene datos meteorológicos simplificados de una estación
+     * Obtiene datos meteorológicos simplificados de una estación, o null si no hay datos
      */
-    public Map<String, Object> getStationWeatherData(String stationId) {
-        // Datos actuales
-        String fluxCurrent = String.format("""
-            from(bucket: "%s")
+    public WeatherDataSimple getStationWeatherData(String stationId) {
+        List<WeatherDataSimple> data = getStationsWeatherData(List.of(stationId));
+        return data.isEmpty() ? null : data.get(0);
+    }
+
+    /**
+     * Obtiene datos meteorológicos simplificados de varias estaciones (todas si la lista está vacía).
+     * Los valores actuales y los promedios de 7 días, agrupados por station_id, se calculan en un solo
+     * script con dos yield, una sola ida y vuelta para todas las estaciones.
+     */
+    public List<WeatherDataSimple> getStationsWeatherData(Collection<String> stationIds) {
+        String stationFilter = stationIds.isEmpty()
+                ? "exists r.station_id"
+                : stationIds.stream()
+                        .map(id -> "r[\"station_id\"] == \"" + fluxString(id) + "\"")
+                        .collect(Collectors.joining(" or "));
+
+        String flux = String.format("""
+            from(bucket: "%1$s")
               |> range(start: -1h)
-              |> filter(fn: (r) => r["station_id"] == "%s")
+              |> filter(fn: (r) => %2$s)
               |> filter(fn: (r) => 
                   r["_field"] == "temp" or 
                   r["_field"] == "wind_chill" or 
@@ -193,13 +353,11 @@ public class WeatherRepository {
               )
               |> last()
               |> pivot(rowKey:["_time"], columnKey: ["_field"], valueColumn: "_value")
-            """, influxDBConfig.getBucket(), stationId);
+              |> yield(name: "current")
 
-        // Promedios de 7 días
-        String fluxAvg = String.format("""
-            from(bucket: "%s")
+            from(bucket: "%1$s")
               |> range(start: -7d)
-              |> filter(fn: (r) => r["station_id"] == "%s")
+              |> filter(fn: (r) => %2$s)
               |> filter(fn: (r) => 
                   r["_field"] == "temp" or 
                   r["_field"] == "wind_chill" or 
@@ -209,184 +367,228 @@ public class WeatherRepository {
               )
               |> mean()
               |> pivot(rowKey:["station_id"], columnKey: ["_field"], valueColumn: "_value")
-            """, influxDBConfig.getBucket(), stationId);
+              |> yield(name: "avg7d")
+            """, influxDBConfig.getBucket(), stationFilter);
 
-        QueryApi queryApi = influxDBClient.getQueryApi();
+        return queryCoalescer.execute(flux, () -> {
+            Map<String, WeatherDataSimple> result = new LinkedHashMap<>();
 
-        Map<String, Object> result = new HashMap<>();
-
-        // Obtener datos actuales
-        List<FluxTable> currentTables = queryApi.query(fluxCurrent);
-        for (FluxTable table : currentTables) {
-            for (FluxRecord record : table.getRecords()) {
-                result.put("timestamp", record.getTime());
-                result.put("stationId", record.getValueByKey("station_id"));
-                result.put("stationName", record.getValueByKey("station_name"));
-                result.put("temp", record.getValueByKey("temp"));
-                result.put("windChill", record.getValueByKey("wind_chill"));
-                result.put("dewPoint", record.getValueByKey("dew_point"));
-                result.put("wetBulb", record.getValueByKey("wet_bulb"));
-                result.put("hum", record.getValueByKey("hum"));
-                result.put("windSpeedLast", record.getValueByKey("wind_speed_last"));
-                result.put("windDirLast", record.getValueByKey("wind_dir_last"));
-                result.put("rainfallDayMm", record.getValueByKey("rainfall_day_mm"));
-                result.put("rainfallMonthMm", record.getValueByKey("rainfall_month_mm"));
-            }
+            // Los resultados de cada yield se distinguen por la columna "result"; cada serie llega en su
+            // propia tabla, así que los registros de una misma estación se fusionan en un único DTO
+            streamQuery(flux, record -> {
+                String stationId = (String) record.getValueByKey("station_id");
+                if (stationId == null) {
+                    return;
+                }
+
+                WeatherDataSimple data = result.computeIfAbsent(stationId,
+                        id -> WeatherDataSimple.builder().stationId(id).build());
+
+                if ("current".equals(record.getResult())) {
+                    Instant time = record.getTime();
+                    if (time != null && (data.getTimestamp() == null || time.isAfter(data.getTimestamp()))) {
+                        data.setTimestamp(time);
+                    }
+                    if (record.getValueByKey("station_name") instanceof String name) {
+                        data.setStationName(name);
+                    }
+                    setIfPresent(record, "temp", data::setTemp);
+                    setIfPresent(record, "wind_chill", data::setWindChill);
+                    setIfPresent(record, "dew_point", data::setDewPoint);
+                    setIfPresent(record, "wet_bulb", data::setWetBulb);
+                    setIfPresent(record, "hum", data::setHum);
+                    setIfPresent(record, "wind_speed_last", data::setWindSpeedLast);
+                    setIfPresent(record, "wind_dir_last", data::setWindDirLast);
+                    setIfPresent(record, "rainfall_day_mm", data::setRainfallDayMm);
+                    setIfPresent(record, "rainfall_month_mm", data::setRainfallMonthMm);
+                } else if ("avg7d".equals(record.getResult())) {
+                    setIfPresent(record, "temp", data::setTempAvg7Days);
+                    setIfPresent(record, "wind_chill", data::setWindChillAvg7Days);
+                    setIfPresent(record, "dew_point", data::setDewPointAvg7Days);
+                    setIfPresent(record, "wet_bulb", data::setWetBulbAvg7Days);
+                    setIfPresent(record, "hum", data::setHumAvg7Days);
+                }
+            });
+
+            log.debug("Retrieved simplified weather data for {} stations", result.size());
+            return new ArrayList<>(result.values());
+        });
+    }
+
+    /**
+     * Construye una consulta que agrega cada campo con su función en aggregateWindow antes del pivot,
+     * así InfluxDB devuelve una fila por ventana en lugar de una por medición
+     */
+    private String aggregatedFlux(Instant start, Instant stop, String stationFilter, Duration every,
+                                  Collection<String> columns) {
+        String range = stop != null
+                ? String.format("range(start: time(v: \"%s\"), stop: time(v: \"%s\"))", start, stop)
+                : String.format("range(start: time(v: \"%s\"))", start);
+
+        String branches = AGGREGATION_FILTERS.entrySet().stream()
+                .map(entry -> String.format(
+                        "    data |> filter(fn: (r) => %s) |> aggregateWindow(every: %ds, fn: %s, createEmpty: false)",
+                        entry.getValue(), every.toSeconds(), entry.getKey().getFunction()))
+                .collect(Collectors.joining(",\n"));
+
+        return String.format("""
+            data = from(bucket: "%s")
+              |> %s
+              %s
+              |> filter(fn: (r) => %s)
+
+            union(tables: [
+            %s
+            ])
+              %s
+            """, influxDBConfig.getBucket(), range, stationFilter, fieldFilter(columns), branches, pivotStage());
+    }
+
+    /**
+     * Escapa un valor para usarlo dentro de un literal de cadena Flux: barras, comillas y la interpolación ${
+     */
+    private static String fluxString(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("${", "\\${");
+    }
+
+    /**
+     * Predicado Flux sobre _field: las columnas indicadas o, si no se indica ninguna, todo salvo la ubicación
+     */
+    private static String fieldFilter(Collection<String> columns) {
+        if (columns == null || columns.isEmpty()) {
+            return "r[\"_field\"] != \"elevation\" and r[\"_field\"] != \"latitude\" and r[\"_field\"] != \"longitude\"";
         }
+        return columns.stream()
+                .map(column -> "r[\"_field\"] == \"" + column + "\"")
+                .collect(Collectors.joining(" or "));
+    }
 
-        // Obtener promedios
-        List<FluxTable> avgTables = queryApi.query(fluxAvg);
-        for (FluxTable table : avgTables) {
-            for (FluxRecord record : table.getRecords()) {
-                result.put("tempAvg7Days", record.getValueByKey("temp"));
-                result.put("windChillAvg7Days", record.getValueByKey("wind_chill"));
-                result.put("dewPointAvg7Days", record.getValueByKey("dew_point"));
-                result.put("wetBulbAvg7Days", record.getValueByKey("wet_bulb"));
-                result.put("humAvg7Days", record.getValueByKey("hum"));
+    private static Map<MeasurementField.Aggregation, String> aggregationFilters() {
+        Map<MeasurementField.Aggregation, List<String>> columns = new EnumMap<>(MeasurementField.Aggregation.class);
+        for (MeasurementField field : MeasurementField.values()) {
+            if (!LOCATION_FIELDS.contains(field)) {
+                columns.computeIfAbsent(field.getAggregation(), a -> new ArrayList<>()).add(field.getColumn());
             }
         }
+        columns.computeIfAbsent(MeasurementField.Aggregation.LAST, a -> new ArrayList<>()).add("bar_trend");
 
-        return result;
+        Map<MeasurementField.Aggregation, String> filters = new EnumMap<>(MeasurementField.Aggregation.class);
+        columns.forEach((aggregation, names) -> filters.put(aggregation, names.stream()
+                .map(name -> "r[\"_field\"] == \"" + name + "\"")
+                .collect(Collectors.joining(" or "))));
+        return Collections.unmodifiableMap(filters);
     }
 
     /**
-     * Ejecuta una consulta Flux y mapea los resultados a WeatherMeasurement
+     * Ejecuta una consulta Flux y mapea los resultados a WeatherMeasurement.
+     * Las ejecuciones concurrentes de la misma consulta comparten un único viaje a InfluxDB.
      */
     private List<WeatherMeasurement> executeQuery(String flux) {
-        QueryApi queryApi = influxDBClient.getQueryApi();
-        List<FluxTable> tables = queryApi.query(flux);
-        Map<String, WeatherMeasurement.WeatherMeasurementBuilder> measurementMap = new HashMap<>();
+        return queryCoalescer.execute(flux, () -> mapMeasurements(flux));
+    }
 
-        for (FluxTable table : tables) {
-            for (FluxRecord record : table.getRecords()) {
-                Instant time = record.getTime();
-                String stationId = (String) record.getValueByKey("station_id");
+    /**
+     * Mapea los registros de una consulta de mediciones a WeatherMeasurement
+     */
+    private List<WeatherMeasurement> mapMeasurements(String flux) {
+        MeasurementAssembler assembler = new MeasurementAssembler();
+        readMeasurements(flux, assembler);
 
-                if (time == null || stationId == null) {
-                    continue;
-                }
+        // El resultado puede compartirse entre varios llamantes, así que se devuelve inmodificable
+        List<WeatherMeasurement> measurements = Collections.unmodifiableList(assembler.build());
 
-                String key = stationId + "_" + time.toString();
-                WeatherMeasurement.WeatherMeasurementBuilder builder =
-                        measurementMap.computeIfAbsent(key, k -> WeatherMeasurement.builder()
-                                .timestamp(time)
-                                .stationId(stationId));
-
-                // Mapear campos de texto
-                setStringField(builder, record, "station_name", (b, v) -> b.stationName(v));
-                setStringField(builder, record, "bar_trend", (b, v) -> b.barTrend(v));
-
-                // Temperatura
-                setDoubleField(builder, record, "temp", (b, v) -> b.temp(v));
-                setDoubleField(builder, record, "temp_in", (b, v) -> b.tempIn(v));
-                setDoubleField(builder, record, "dew_point", (b, v) -> b.dewPoint(v));
-                setDoubleField(builder, record, "dew_point_in", (b, v) -> b.dewPointIn(v));
-                setDoubleField(builder, record, "heat_index", (b, v) -> b.heatIndex(v));
-                setDoubleField(builder, record, "heat_index_in", (b, v) -> b.heatIndexIn(v));
-                setDoubleField(builder, record, "wind_chill", (b, v) -> b.windChill(v));
-                setDoubleField(builder, record, "wet_bulb", (b, v) -> b.wetBulb(v));
-                setDoubleField(builder, record, "wet_bulb_in", (b, v) -> b.wetBulbIn(v));
-                setDoubleField(builder, record, "thw_index", (b, v) -> b.thwIndex(v));
-                setDoubleField(builder, record, "thsw_index", (b, v) -> b.thswIndex(v));
-
-                // Humedad
-                setDoubleField(builder, record, "hum", (b, v) -> b.hum(v));
-                setDoubleField(builder, record, "hum_in", (b, v) -> b.humIn(v));
-
-                // Presión
-                setDoubleField(builder, record, "bar_absolute", (b, v) -> b.barAbsolute(v));
-                setDoubleField(builder, record, "bar_sea_level", (b, v) -> b.barSeaLevel(v));
-                setDoubleField(builder, record, "bar_offset", (b, v) -> b.barOffset(v));
-
-                // Viento
-                setDoubleField(builder, record, "wind_speed_last", (b, v) -> b.windSpeedLast(v));
-                setDoubleField(builder, record, "wind_speed_avg_last_1_min", (b, v) -> b.windSpeedAvgLast1Min(v));
-                setDoubleField(builder, record, "wind_speed_avg_last_2_min", (b, v) -> b.windSpeedAvgLast2Min(v));
-                setDoubleField(builder, record, "wind_speed_avg_last_10_min", (b, v) -> b.windSpeedAvgLast10Min(v));
-                setDoubleField(builder, record, "wind_speed_hi_last_2_min", (b, v) -> b.windSpeedHiLast2Min(v));
-                setDoubleField(builder, record, "wind_speed_hi_last_10_min", (b, v) -> b.windSpeedHiLast10Min(v));
-                setDoubleField(builder, record, "wind_dir_last", (b, v) -> b.windDirLast(v));
-                setDoubleField(builder, record, "wind_dir_scalar_avg_last_1_min", (b, v) -> b.windDirScalarAvgLast1Min(v));
-                setDoubleField(builder, record, "wind_dir_scalar_avg_last_2_min", (b, v) -> b.windDirScalarAvgLast2Min(v));
-                setDoubleField(builder, record, "wind_dir_scalar_avg_last_10_min", (b, v) -> b.windDirScalarAvgLast10Min(v));
-                setDoubleField(builder, record, "wind_dir_at_hi_speed_last_2_min", (b, v) -> b.windDirAtHiSpeedLast2Min(v));
-                setDoubleField(builder, record, "wind_dir_at_hi_speed_last_10_min", (b, v) -> b.windDirAtHiSpeedLast10Min(v));
-                setDoubleField(builder, record, "wind_run_day", (b, v) -> b.windRunDay(v));
-
-                // Lluvia
-                setDoubleField(builder, record, "rainfall_daily_mm", (b, v) -> b.rainfallDailyMm(v));
-                setDoubleField(builder, record, "rainfall_daily_in", (b, v) -> b.rainfallDailyIn(v));
-                setDoubleField(builder, record, "rainfall_day_mm", (b, v) -> b.rainfallDayMm(v));
-                setDoubleField(builder, record, "rainfall_month_mm", (b, v) -> b.rainfallMonthMm(v));
-                setDoubleField(builder, record, "rainfall_year_mm", (b, v) -> b.rainfallYearMm(v));
-                setDoubleField(builder, record, "rainfall_last_15_min_mm", (b, v) -> b.rainfallLast15MinMm(v));
-                setDoubleField(builder, record, "rainfall_last_60_min_mm", (b, v) -> b.rainfallLast60MinMm(v));
-                setDoubleField(builder, record, "rainfall_last_24_hr_mm", (b, v) -> b.rainfallLast24HrMm(v));
-                setDoubleField(builder, record, "rain_rate_last_mm", (b, v) -> b.rainRateLastMm(v));
-                setDoubleField(builder, record, "rain_rate_hi_mm", (b, v) -> b.rainRateHiMm(v));
-                setDoubleField(builder, record, "rain_rate_hi_last_15_min_mm", (b, v) -> b.rainRateHiLast15MinMm(v));
-
-                // Radiación solar y UV
-                setDoubleField(builder, record, "solar_rad", (b, v) -> b.solarRad(v));
-                setDoubleField(builder, record, "solar_energy_day", (b, v) -> b.solarEnergyDay(v));
-                setDoubleField(builder, record, "uv_index", (b, v) -> b.uvIndex(v));
-                setDoubleField(builder, record, "uv_dose_day", (b, v) -> b.uvDoseDay(v));
-
-                // Evapotranspiración
-                setDoubleField(builder, record, "et_day", (b, v) -> b.etDay(v));
-                setDoubleField(builder, record, "et_month", (b, v) -> b.etMonth(v));
-                setDoubleField(builder, record, "et_year", (b, v) -> b.etYear(v));
-
-                // Ubicación - estos campos son tags en InfluxDB, no fields
-                // Se obtienen directamente del record como tags
-                Object lat = record.getValueByKey("latitude");
-                Object lon = record.getValueByKey("longitude");
-                Object elev = record.getValueByKey("elevation");
-
-                if (lat instanceof Number) {
-                    builder.latitude(((Number) lat).doubleValue());
-                }
-                if (lon instanceof Number) {
-                    builder.longitude(((Number) lon).doubleValue());
-                }
-                if (elev instanceof Number) {
-                    builder.elevation(((Number) elev).doubleValue());
-                }
-            }
+        log.debug("Retrieved {} measurements from InfluxDB", measurements.size());
+        return measurements;
+    }
+
+    /**
+     * Lee una consulta de mediciones sobre el ensamblador, como CSV crudo o como FluxRecord según la configuración
+     */
+    private void readMeasurements(String flux, MeasurementAssembler assembler) {
+        if (rawCsv) {
+            // El CSV se interpreta directamente sobre los builders, sin FluxRecord ni mapas intermedios
+            AnnotatedCsvParser parser = new AnnotatedCsvParser(assembler);
+            streamRawQuery(flux, parser::line);
+            parser.finish();
+        } else {
+            mapRecords(flux, assembler);
         }
+    }
 
-        List<WeatherMeasurement> measurements = measurementMap.values().stream()
-                .map(WeatherMeasurement.WeatherMeasurementBuilder::build)
-                .toList();
+    /**
+     * Fusiona en el ensamblador los FluxRecord de una consulta de mediciones
+     */
+    private void mapRecords(String flux, MeasurementAssembler assembler) {
+        MappingState state = new MappingState();
 
-        log.debug("Retrieved {} measurements from InfluxDB", measurements.size());
-        return measurements;
+        // Cada registro se fusiona en su medición a medida que llega y luego se descarta,
+        // así la memoria crece con el número de filas resultantes y no con las filas crudas de Flux
+        streamQuery(flux, record -> {
+            Instant time = record.getTime();
+            String stationId = (String) record.getValueByKey("station_id");
+
+            if (time == null || stationId == null) {
+                return;
+            }
+
+            WeatherMeasurement.WeatherMeasurementBuilder builder = assembler.row(stationId, time);
+
+            // El plan se compila una vez por tabla a partir de sus columnas
+            if (state.plan == null || record.getTable() != state.table) {
+                state.table = record.getTable();
+                state.plan = MeasurementMappingPlan.forColumns(record.getValues().keySet());
+            }
+            state.plan.apply(record, builder);
+        });
     }
 
     /**
-     * Mapea un campo String del registro al builder
+     * Ejecuta una consulta Flux con la variante de callbacks del cliente y entrega cada registro
+     * al consumidor en el hilo llamante, sin materializar las FluxTable completas en memoria
      */
-    private void setStringField(WeatherMeasurement.WeatherMeasurementBuilder builder,
-                                FluxRecord record,
-                                String fieldName,
-                                StringFieldSetter setter) {
-        Object value = record.getValueByKey(fieldName);
-        if (value instanceof String) {
-            setter.set(builder, (String) value);
+    private void streamQuery(String flux, Consumer<FluxRecord> consumer) {
+        QueryApi queryApi = influxDBClient.getQueryApi();
+        QueryStream<FluxRecord> stream = new QueryStream<>(STREAM_BUFFER_SIZE);
+
+        queryApi.query(flux, stream::onNext, stream::onError, stream::onComplete);
+        stream.drain(consumer);
+    }
+
+    /**
+     * Ejecuta una consulta Flux con queryRaw y entrega cada línea del CSV anotado al consumidor en el hilo llamante
+     */
+    private void streamRawQuery(String flux, Consumer<String> consumer) {
+        QueryApi queryApi = influxDBClient.getQueryApi();
+        QueryStream<String> stream = new QueryStream<>(STREAM_BUFFER_SIZE);
+
+        queryApi.queryRaw(flux, stream::onNext, stream::onError, stream::onComplete);
+        stream.drain(consumer);
+    }
+
+    /**
+     * Asigna el valor numérico de la columna si el registro lo trae
+     */
+    private void setIfPresent(FluxRecord record, String column, Consumer<Double> setter) {
+        if (record.getValueByKey(column) instanceof Number number) {
+            setter.accept(number.doubleValue());
         }
     }
 
     /**
-     * Mapea un campo Double del registro al builder
+     * Convierte a Double un valor numérico o de texto; devuelve null si no es convertible
      */
-    private void setDoubleField(WeatherMeasurement.WeatherMeasurementBuilder builder,
-                                FluxRecord record,
-                                String fieldName,
-                                DoubleFieldSetter setter) {
-        Object value = record.getValueByKey(fieldName);
-        if (value instanceof Number) {
-            setter.set(builder, ((Number) value).doubleValue());
+    private Double toDouble(Object value) {
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        if (value instanceof String text) {
+            try {
+                return Double.parseDouble(text);
+            } catch (NumberFormatException e) {
+                log.warn("Cannot parse numeric value: {}", text);
+            }
         }
+        return null;
     }
 
     /**
@@ -397,18 +599,33 @@ public class WeatherRepository {
     }
 
     /**
-     * Interfaz funcional para setters de campos String
+     * Etapa final de las consultas de mediciones según dónde se pivota. En modo cliente InfluxDB devuelve
+     * filas _time/_field/_value ordenadas por tiempo dentro de cada serie y el ensamblador las fusiona;
+     * se conservan las mismas columnas de estación que deja el pivot en el servidor, incluidas las
+     * coordenadas cuando llegan como tags.
      */
-    @FunctionalInterface
-    private interface StringFieldSetter {
-        void set(WeatherMeasurement.WeatherMeasurementBuilder builder, String value);
+    private String pivotStage() {
+        return pivotMode.stage;
+    }
+
+    enum PivotMode {
+        SERVER("|> pivot(rowKey:[\"_time\"], columnKey: [\"_field\"], valueColumn: \"_value\")"
+                + " |> sort(columns: [\"_time\"], desc: false)"),
+        CLIENT("|> keep(columns: [\"_time\", \"_field\", \"_value\", \"station_id\", \"station_name\","
+                + " \"latitude\", \"longitude\", \"elevation\"])");
+
+        private final String stage;
+
+        PivotMode(String stage) {
+            this.stage = stage;
+        }
     }
 
     /**
-     * Interfaz funcional para setters de campos Double
+     * Plan de mapeo de la tabla que se está leyendo
      */
-    @FunctionalInterface
-    private interface DoubleFieldSetter {
-        void set(WeatherMeasurement.WeatherMeasurementBuilder builder, Double value);
+    private static final class MappingState {
+        private int table = -1;
+        private MeasurementMappingPlan plan;
     }
 }
\ No newline at end of file
@@ -0,0 +1,176 @@
+package com.weather.service;
+
+import com.weather.model.MeasurementSeries;
+import com.weather.model.WeatherMeasurement;
+import com.weather.repository.WeatherRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caché de mediciones de todas las estaciones dividida en segmentos de un día UTC.
+ * Los días ya transcurridos no cambian, así que su segmento se consulta una sola vez y se conserva
+ * mientras esté dentro de la ventana weather.query.max-days; solo el día en curso se consulta en vivo.
+ * Una consulta de 7 días resuelve así seis días desde memoria más una consulta pequeña.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DaySegmentCache {
+
+    /**
+     * Margen tras el fin de un día antes de considerarlo cerrado, para no perder escrituras que llegan tarde
+     */
+    private static final Duration SETTLE_DELAY = Duration.ofMinutes(10);
+
+    private final WeatherRepository weatherRepository;
+
+    @Value("${weather.query.max-days:7}")
+    private int maxDays;
+
+    private final Map<LocalDate, Map<String, MeasurementSeries>> segments = new ConcurrentHashMap<>();
+
+    /**
+     * Indica si la caché cubre un intervalo que empieza en el instante indicado
+     */
+    public boolean covers(Instant start) {
+        LocalDate oldest = LocalDate.ofInstant(Instant.now(), ZoneOffset.UTC).minusDays(maxDays);
+        return !LocalDate.ofInstant(start, ZoneOffset.UTC).isBefore(oldest);
+    }
+
+    /**
+     * Devuelve las mediciones de todas las estaciones en el intervalo [start, end), agrupadas por estación
+     * y ordenadas por tiempo. Un end nulo o futuro equivale a "hasta ahora".
+     */
+    public Map<String, List<WeatherMeasurement>> getAllStationsMeasurements(Instant start, Instant end) {
+        Instant now = Instant.now();
+        Instant stop = end != null && end.isBefore(now) ? end : null;
+        LocalDate firstDay = LocalDate.ofInstant(start, ZoneOffset.UTC);
+
+        Map<String, List<List<WeatherMeasurement>>> parts = new LinkedHashMap<>();
+
+        // Días cerrados desde la caché; el primero y el último pueden quedar recortados por el intervalo
+        LocalDate day = firstDay;
+        while (dayStart(day.plusDays(1)).plus(SETTLE_DELAY).isBefore(now) && before(dayStart(day), stop)) {
+            for (Map.Entry<String, MeasurementSeries> entry : segment(day).entrySet()) {
+                MeasurementSeries series = entry.getValue().since(start);
+                if (stop != null) {
+                    series = series.until(stop);
+                }
+                if (!series.isEmpty()) {
+                    parts.computeIfAbsent(entry.getKey(), id -> new ArrayList<>()).add(series.asMeasurements());
+                }
+            }
+            day = day.plusDays(1);
+        }
+
+        // El resto, normalmente solo el día en curso, se consulta en vivo
+        if (before(dayStart(day), stop)) {
+            Instant liveStart = day.equals(firstDay) ? start : dayStart(day);
+            List<WeatherMeasurement> live = stop != null
+                    ? weatherRepository.getAllStationsMeasurementsBetween(liveStart, stop)
+                    : weatherRepository.getAllStationsMeasurementsSince(liveStart);
+            groupByStation(live).forEach((stationId, rows) ->
+                    parts.computeIfAbsent(stationId, id -> new ArrayList<>()).add(rows));
+        }
+
+        evictBefore(LocalDate.ofInstant(now, ZoneOffset.UTC).minusDays(maxDays + 1L));
+
+        Map<String, List<WeatherMeasurement>> result = new LinkedHashMap<>();
+        parts.forEach((stationId, stationParts) -> result.put(stationId,
+                stationParts.size() == 1 ? stationParts.get(0) : new SegmentedList<>(stationParts)));
+        return result;
+    }
+
+    /**
+     * Devuelve el segmento del día, consultándolo la primera vez. Las consultas concurrentes del mismo día
+     * generan el mismo Flux y el repositorio las une en una sola.
+     */
+    private Map<String, MeasurementSeries> segment(LocalDate day) {
+        Map<String, MeasurementSeries> segment = segments.get(day);
+        if (segment != null) {
+            return segment;
+        }
+
+        List<WeatherMeasurement> rows = weatherRepository.getAllStationsMeasurementsBetween(
+                dayStart(day), dayStart(day.plusDays(1)));
+
+        Map<String, MeasurementSeries> loaded = new LinkedHashMap<>();
+        groupByStation(rows).forEach((stationId, stationRows) ->
+                loaded.put(stationId, MeasurementSeries.of(stationId, stationRows)));
+
+        log.debug("Loaded day segment {} with {} rows for {} stations", day, rows.size(), loaded.size());
+        Map<String, MeasurementSeries> previous = segments.putIfAbsent(day, loaded);
+        return previous != null ? previous : loaded;
+    }
+
+    private void evictBefore(LocalDate oldest) {
+        segments.keySet().removeIf(day -> day.isBefore(oldest));
+    }
+
+    private static boolean before(Instant instant, Instant stop) {
+        return stop == null || instant.isBefore(stop);
+    }
+
+    private static Instant dayStart(LocalDate day) {
+        return day.atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    private static Map<String, List<WeatherMeasurement>> groupByStation(List<WeatherMeasurement> rows) {
+        Map<String, List<WeatherMeasurement>> byStation = new LinkedHashMap<>();
+        for (WeatherMeasurement row : rows) {
+            byStation.computeIfAbsent(row.getStationId(), id -> new ArrayList<>()).add(row);
+        }
+        return byStation;
+    }
+
+    /**
+     * Lista de solo lectura que concatena varias listas sin copiarlas
+     */
+    private static final class SegmentedList<T> extends AbstractList<T> implements RandomAccess {
+
+        private final List<List<T>> parts;
+        private final int[] offsets;
+
+        private SegmentedList(List<List<T>> parts) {
+            this.parts = parts;
+            this.offsets = new int[parts.size() + 1];
+            for (int i = 0; i < parts.size(); i++) {
+                offsets[i + 1] = offsets[i] + parts.get(i).size();
+            }
+        }
+
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size());
+            }
+            int part = Arrays.binarySearch(offsets, index);
+            // Con partes vacías puede haber offsets repetidos; se avanza hasta la última parte que empieza en index
+            part = part >= 0 ? part : -part - 2;
+            while (part + 1 < parts.size() && offsets[part + 1] <= index) {
+                part++;
+            }
+            return parts.get(part).get(index - offsets[part]);
+        }
+
+        @Override
+        public int size() {
+            return offsets[offsets.length - 1];
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,208 @@
+package com.weather.service;
+
+import com.weather.model.MeasurementField;
+import com.weather.model.MeasurementSeries;
+
+/**
+ * Reducción visual de una serie a un presupuesto de puntos conservando su forma, a diferencia de un promedio
+ * que aplana picos de temperatura y ráfagas. Elige filas completas de la serie guiándose por un campo:
+ * <ul>
+ *   <li>LTTB (Largest-Triangle-Three-Buckets): en cada bucket conserva el punto que forma el triángulo
+ *   de mayor área con el punto elegido antes y el promedio del bucket siguiente.</li>
+ *   <li>M4: divide el tiempo en maxPoints / 4 columnas y conserva el primero, el último, el mínimo
+ *   y el máximo de cada una, lo que reproduce exactamente un gráfico de líneas de ese ancho.</li>
+ * </ul>
+ * Ambos recorren una sola vez las columnas primitivas de la serie. Las filas sin valor en el campo guía
+ * también participan, con el último valor conocido, para no perder las demás propiedades de esas filas.
+ */
+final class Downsampler {
+
+    enum Method {
+        LTTB,
+        M4
+    }
+
+    /**
+     * Parámetros de reducción: algoritmo, presupuesto de puntos y campo que guía la selección
+     */
+    record Spec(Method method, int maxPoints, MeasurementField field) {
+    }
+
+    private Downsampler() {
+    }
+
+    /**
+     * Reduce la serie al presupuesto de puntos; si ya cabe se devuelve la misma serie
+     */
+    static MeasurementSeries apply(MeasurementSeries series, Spec spec) {
+        int n = series.size();
+        if (n <= spec.maxPoints()) {
+            return series;
+        }
+
+        long origin = series.timestampNanos(0);
+        double[] x = new double[n];
+        double[] y = guideValues(series, spec.field());
+        for (int row = 0; row < n; row++) {
+            x[row] = (series.timestampNanos(row) - origin) / 1e9;
+        }
+
+        int[] selected = spec.method() == Method.LTTB
+                ? lttb(x, y, spec.maxPoints())
+                : m4(x, y, spec.maxPoints());
+        return series.select(selected);
+    }
+
+    /**
+     * Valores del campo guía por fila. Los huecos toman el último valor conocido (el primero conocido
+     * al principio de la serie); sin ningún valor todas las filas valen lo mismo, lo que deja
+     * una selección uniforme en el tiempo.
+     */
+    private static double[] guideValues(MeasurementSeries series, MeasurementField field) {
+        int n = series.size();
+        double[] y = new double[n];
+        if (!series.hasField(field)) {
+            return y;
+        }
+
+        double last = Double.NaN;
+        int firstKnown = -1;
+        for (int row = 0; row < n; row++) {
+            double value = series.value(field, row);
+            if (!Double.isNaN(value)) {
+                last = value;
+                if (firstKnown < 0) {
+                    firstKnown = row;
+                }
+            }
+            y[row] = last;
+        }
+        for (int row = 0; row < firstKnown; row++) {
+            y[row] = y[firstKnown];
+        }
+        return y;
+    }
+
+    /**
+     * Índices elegidos por LTTB, en orden; el primero y el último siempre se conservan
+     */
+    static int[] lttb(double[] x, double[] y, int threshold) {
+        int n = x.length;
+        if (threshold >= n || threshold < 3) {
+            return identity(Math.min(n, Math.max(threshold, 0)), n);
+        }
+
+        int[] sampled = new int[threshold];
+        double bucketSize = (double) (n - 2) / (threshold - 2);
+        int a = 0;
+        int k = 0;
+        sampled[k++] = 0;
+
+        for (int i = 0; i < threshold - 2; i++) {
+            // Promedio del bucket siguiente, que hace de tercer vértice
+            int avgStart = (int) ((i + 1) * bucketSize) + 1;
+            int avgEnd = Math.min((int) ((i + 2) * bucketSize) + 1, n);
+            double avgX = 0;
+            double avgY = 0;
+            for (int j = avgStart; j < avgEnd; j++) {
+                avgX += x[j];
+                avgY += y[j];
+            }
+            int avgCount = avgEnd - avgStart;
+            avgX /= avgCount;
+            avgY /= avgCount;
+
+            int rangeStart = (int) (i * bucketSize) + 1;
+            int rangeEnd = (int) ((i + 1) * bucketSize) + 1;
+            double ax = x[a];
+            double ay = y[a];
+            double maxArea = -1;
+            int next = rangeStart;
+            for (int j = rangeStart; j < rangeEnd; j++) {
+                double area = Math.abs((ax - avgX) * (y[j] - ay) - (ax - x[j]) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = j;
+                }
+            }
+
+            sampled[k++] = next;
+            a = next;
+        }
+
+        sampled[k] = n - 1;
+        return sampled;
+    }
+
+    /**
+     * Índices elegidos por M4, en orden y sin repetidos: primero, último, mínimo y máximo de cada columna de tiempo
+     */
+    static int[] m4(double[] x, double[] y, int maxPoints) {
+        int n = x.length;
+        int buckets = maxPoints / 4;
+        if (n <= maxPoints || buckets < 1) {
+            return identity(Math.min(n, Math.max(maxPoints, 0)), n);
+        }
+
+        double span = x[n - 1] - x[0];
+        int[] selected = new int[buckets * 4];
+        int k = 0;
+
+        int i = 0;
+        while (i < n) {
+            int bucket = bucketOf(x[i] - x[0], span, buckets);
+            int first = i;
+            int min = i;
+            int max = i;
+            int j = i + 1;
+            while (j < n && bucketOf(x[j] - x[0], span, buckets) == bucket) {
+                if (y[j] < y[min]) {
+                    min = j;
+                }
+                if (y[j] > y[max]) {
+                    max = j;
+                }
+                j++;
+            }
+            int last = j - 1;
+
+            // Los cuatro índices se emiten en orden de tiempo y sin repetir
+            int low = Math.min(min, max);
+            int high = Math.max(min, max);
+            k = add(selected, k, first);
+            k = add(selected, k, low);
+            k = add(selected, k, high);
+            k = add(selected, k, last);
+            i = j;
+        }
+
+        int[] result = new int[k];
+        System.arraycopy(selected, 0, result, 0, k);
+        return result;
+    }
+
+    private static int bucketOf(double offset, double span, int buckets) {
+        if (span <= 0) {
+            return 0;
+        }
+        return Math.min((int) (offset / span * buckets), buckets - 1);
+    }
+
+    private static int add(int[] selected, int k, int index) {
+        if (k == 0 || selected[k - 1] != index) {
+            selected[k++] = index;
+        }
+        return k;
+    }
+
+    /**
+     * Con un presupuesto degenerado se reparten los puntos de forma uniforme
+     */
+    private static int[] identity(int count, int n) {
+        int[] indices = new int[count];
+        for (int i = 0; i < count; i++) {
+            indices[i] = count == n ? i : (int) ((long) i * (n - 1) / Math.max(count - 1, 1));
+        }
+        return indices;
+    }
+}
\ No newline at end of file
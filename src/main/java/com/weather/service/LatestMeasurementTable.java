@@ -0,0 +1,139 @@
+package com.weather.service;
+
+import com.weather.model.WeatherMeasurement;
+import com.weather.repository.WeatherRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Tabla en memoria con la última medición de cada estación, indexada por ordinal de estación.
+ * Un poller programado la actualiza con una consulta incremental que parte de la marca de agua más antigua
+ * entre las estaciones vigentes, así las filas que una estación sube con retraso respecto de las demás
+ * también se leen; los lectores usan una instantánea inmutable sin bloqueos.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LatestMeasurementTable {
+
+    /**
+     * Antigüedad máxima de una medición para considerarla "última" (equivale al range(start: -1h) original)
+     */
+    private static final Duration MAX_AGE = Duration.ofHours(1);
+
+    private final WeatherRepository weatherRepository;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    /**
+     * Consulta las filas nuevas desde el último timestamp conocido y las fusiona en la tabla
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${weather.latest.poll-interval:PT10S}")
+    public void poll() {
+        Snapshot current = snapshot;
+        Instant now = Instant.now();
+        Instant start = current.loaded() ? current.oldestWatermark(now.minus(MAX_AGE)) : now.minus(MAX_AGE);
+
+        try {
+            List<WeatherMeasurement> rows = weatherRepository.getLatestMeasurementsSince(start);
+            snapshot = current.merge(rows);
+            log.debug("Latest measurement table updated with {} rows since {}", rows.size(), start);
+        } catch (RuntimeException e) {
+            log.warn("Could not update latest measurement table: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Indica si la tabla ya se cargó al menos una vez
+     */
+    public boolean isLoaded() {
+        return snapshot.loaded();
+    }
+
+    /**
+     * Devuelve la última medición de cada estación con datos en la última hora
+     */
+    public List<WeatherMeasurement> getLatest() {
+        Snapshot current = snapshot;
+        Instant cutoff = Instant.now().minus(MAX_AGE);
+
+        List<WeatherMeasurement> latest = new ArrayList<>(current.rows().length);
+        for (WeatherMeasurement row : current.rows()) {
+            if (row.getTimestamp().isAfter(cutoff)) {
+                latest.add(row);
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Devuelve la última medición de una estación, si la hay
+     */
+    public Optional<WeatherMeasurement> getLatest(String stationId) {
+        Snapshot current = snapshot;
+        Integer ordinal = current.ordinals().get(stationId);
+        return ordinal != null ? Optional.of(current.rows()[ordinal]) : Optional.empty();
+    }
+
+    /**
+     * Instantánea inmutable: ordinal por estación y fila más reciente por ordinal
+     */
+    private record Snapshot(boolean loaded, Map<String, Integer> ordinals, WeatherMeasurement[] rows) {
+
+        private static final Snapshot EMPTY = new Snapshot(false, Map.of(), new WeatherMeasurement[0]);
+
+        /**
+         * Marca de agua más antigua entre las estaciones con datos posteriores al corte, o el corte si no hay
+         * ninguna. Cada estación avanza con su propia última fila, así una estación rezagada no queda congelada
+         * porque otra ya tenga filas más nuevas.
+         */
+        private Instant oldestWatermark(Instant cutoff) {
+            Instant oldest = null;
+            for (WeatherMeasurement row : rows) {
+                Instant timestamp = row.getTimestamp();
+                if (timestamp.isAfter(cutoff) && (oldest == null || timestamp.isBefore(oldest))) {
+                    oldest = timestamp;
+                }
+            }
+            return oldest != null ? oldest : cutoff;
+        }
+
+        /**
+         * Crea una nueva instantánea con las filas recibidas; solo reemplaza filas más recientes
+         */
+        private Snapshot merge(List<WeatherMeasurement> updates) {
+            Map<String, Integer> newOrdinals = ordinals;
+            WeatherMeasurement[] newRows = Arrays.copyOf(rows, rows.length);
+
+            for (WeatherMeasurement row : updates) {
+                Integer ordinal = newOrdinals.get(row.getStationId());
+                if (ordinal == null) {
+                    if (newOrdinals == ordinals) {
+                        newOrdinals = new HashMap<>(ordinals);
+                    }
+                    ordinal = newRows.length;
+                    newOrdinals.put(row.getStationId(), ordinal);
+                    newRows = Arrays.copyOf(newRows, ordinal + 1);
+                }
+
+                WeatherMeasurement previous = newRows[ordinal];
+                if (previous == null || !row.getTimestamp().isBefore(previous.getTimestamp())) {
+                    newRows[ordinal] = row;
+                }
+            }
+
+            return new Snapshot(true, Map.copyOf(newOrdinals), newRows);
+        }
+    }
+}
\ No newline at end of file
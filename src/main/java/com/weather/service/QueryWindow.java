@@ -0,0 +1,37 @@
+package com.weather.service;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Ventana de tiempo de una consulta: relativa (últimos N días) o absoluta [start, end).
+ * En una ventana absoluta un end nulo significa "hasta ahora". Se usa también como clave de la caché de respuestas.
+ */
+record QueryWindow(Integer days, Instant start, Instant end) {
+
+    static QueryWindow lastDays(int days) {
+        return new QueryWindow(days, null, null);
+    }
+
+    static QueryWindow between(Instant start, Instant end) {
+        return new QueryWindow(null, start, end);
+    }
+
+    boolean isAbsolute() {
+        return start != null;
+    }
+
+    /**
+     * Inicio efectivo de la ventana en el instante actual
+     */
+    Instant from() {
+        return isAbsolute() ? start : Instant.now().minus(Duration.ofDays(days));
+    }
+
+    /**
+     * Fin efectivo de la ventana en el instante actual
+     */
+    Instant to() {
+        return end != null ? end : Instant.now();
+    }
+}
\ No newline at end of file
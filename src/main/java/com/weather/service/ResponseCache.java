@@ -0,0 +1,165 @@
+package com.weather.service;
+
+import com.weather.config.CacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Caché de respuestas del servicio con TTL por caché y stale-while-revalidate.
+ * Una entrada vencida se sigue sirviendo mientras un único refresco en segundo plano la reemplaza,
+ * así las claves muy consultadas nunca esperan a InfluxDB. Solo la primera consulta de una clave es síncrona.
+ * Las claves incluyen parámetros que elige el cliente (días, intervalo, campos), por eso el número de entradas
+ * está acotado: al llenarse se descarta la entrada consultada hace más tiempo.
+ * Los aciertos, fallos, refrescos y descartes se publican como métricas de Micrometer (weather.cache.*).
+ */
+@Slf4j
+@Component
+public class ResponseCache {
+
+    private final CacheProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService refresher;
+
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<List<String>, Counter> counters = new ConcurrentHashMap<>();
+
+    public ResponseCache(CacheProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.refresher = Executors.newFixedThreadPool(Math.max(1, properties.getRefreshThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "response-cache-refresh-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Devuelve el valor cacheado para la clave o lo calcula con el loader.
+     * Si la caché no tiene TTL configurado, el loader se invoca siempre.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String cache, List<?> key, Supplier<T> loader) {
+        Duration ttl = properties.getTtl().get(cache);
+        if (ttl == null || ttl.isZero() || ttl.isNegative()) {
+            return loader.get();
+        }
+
+        Key cacheKey = new Key(cache, key);
+        long now = System.nanoTime();
+        Entry entry = entries.get(cacheKey);
+
+        if (entry == null) {
+            counter(cache, "miss").increment();
+            T value = loader.get();
+            if (entries.size() >= properties.getMaxEntries()) {
+                evictLeastRecentlyUsed();
+            }
+            entries.put(cacheKey, new Entry(value, now));
+            return value;
+        }
+
+        counter(cache, "hit").increment();
+        entry.lastAccess = now;
+        if (now - entry.loadedAt >= ttl.toNanos() && entry.refreshing.compareAndSet(false, true)) {
+            refresh(cacheKey, entry, loader);
+        }
+        return (T) entry.value;
+    }
+
+    /**
+     * Descarta las entradas que no se consultaron durante varios TTL
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void evictIdle() {
+        long now = System.nanoTime();
+        entries.entrySet().removeIf(e -> {
+            Duration ttl = properties.getTtl().get(e.getKey().cache());
+            return ttl == null || now - e.getValue().lastAccess > ttl.toNanos() * properties.getIdleTtlMultiplier();
+        });
+    }
+
+    /**
+     * Descarta la entrada consultada hace más tiempo. Recorre las entradas, lo que solo ocurre
+     * en un fallo con la caché llena.
+     */
+    private void evictLeastRecentlyUsed() {
+        Map.Entry<Key, Entry> oldest = null;
+        for (Map.Entry<Key, Entry> candidate : entries.entrySet()) {
+            if (oldest == null || candidate.getValue().lastAccess - oldest.getValue().lastAccess < 0) {
+                oldest = candidate;
+            }
+        }
+        if (oldest != null && entries.remove(oldest.getKey(), oldest.getValue())) {
+            counter(oldest.getKey().cache(), "evicted").increment();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    private void refresh(Key key, Entry entry, Supplier<?> loader) {
+        try {
+            refresher.execute(() -> {
+                try {
+                    entry.value = loader.get();
+                    entry.loadedAt = System.nanoTime();
+                    counter(key.cache(), "refresh").increment();
+                } catch (RuntimeException e) {
+                    counter(key.cache(), "refresh_error").increment();
+                    log.warn("Could not refresh cache {} for key {}: {}", key.cache(), key.args(), e.getMessage());
+                } finally {
+                    entry.refreshing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            entry.refreshing.set(false);
+        }
+    }
+
+    private Counter counter(String cache, String result) {
+        return counters.computeIfAbsent(List.of(cache, result), k -> Counter.builder("weather.cache.requests")
+                .description("Response cache lookups and background refreshes")
+                .tag("cache", cache)
+                .tag("result", result)
+                .register(meterRegistry));
+    }
+
+    private record Key(String cache, List<?> args) {
+    }
+
+    /**
+     * Valor cacheado; value y loadedAt los reemplaza el hilo que refresca
+     */
+    private static final class Entry {
+
+        private volatile Object value;
+        private volatile long loadedAt;
+        private volatile long lastAccess;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Entry(Object value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+            this.lastAccess = loadedAt;
+        }
+    }
+}
\ No newline at end of file
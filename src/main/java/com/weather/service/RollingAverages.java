@@ -0,0 +1,95 @@
+package com.weather.service;
+
+import com.weather.model.MeasurementField;
+import com.weather.model.MeasurementSeries;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Promedios móviles de 7 días de una estación mantenidos de forma incremental.
+ * Guarda sumas y conteos parciales por hora en un buffer circular de 168 posiciones, así el promedio
+ * se obtiene combinando unas pocas decenas de parciales en lugar de recorrer una semana de puntos.
+ * La ventana se aproxima a la hora: incluye la hora en curso y las 167 anteriores.
+ */
+final class RollingAverages {
+
+    static final int WINDOW_HOURS = 7 * 24;
+
+    private static final long NANOS_PER_HOUR = 3_600_000_000_000L;
+
+    private final MeasurementField[] fields;
+    private final long[] hours = new long[WINDOW_HOURS];
+    private final double[][] sums;
+    private final long[][] counts;
+
+    RollingAverages(List<MeasurementField> fields) {
+        this.fields = fields.toArray(new MeasurementField[0]);
+        this.sums = new double[WINDOW_HOURS][this.fields.length];
+        this.counts = new long[WINDOW_HOURS][this.fields.length];
+        Arrays.fill(hours, Long.MIN_VALUE);
+    }
+
+    /**
+     * Acumula las filas de la serie a partir de la fila indicada
+     */
+    synchronized void add(MeasurementSeries series, int fromRow) {
+        for (int row = fromRow; row < series.size(); row++) {
+            long hour = Math.floorDiv(series.timestampNanos(row), NANOS_PER_HOUR);
+            int slot = slot(hour);
+
+            // El buffer es circular: una hora nueva reutiliza la posición de la hora de hace 7 días
+            if (hours[slot] != hour) {
+                if (hours[slot] > hour) {
+                    continue;
+                }
+                hours[slot] = hour;
+                Arrays.fill(sums[slot], 0);
+                Arrays.fill(counts[slot], 0);
+            }
+
+            for (int i = 0; i < fields.length; i++) {
+                double value = series.value(fields[i], row);
+                if (!Double.isNaN(value)) {
+                    sums[slot][i] += value;
+                    counts[slot][i]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Promedio de cada campo en la ventana que termina en el instante indicado; los campos sin datos se omiten
+     */
+    synchronized Map<MeasurementField, Double> averages(Instant now) {
+        long currentHour = Math.floorDiv(now.getEpochSecond(), 3600);
+        double[] totalSums = new double[fields.length];
+        long[] totalCounts = new long[fields.length];
+
+        for (int slot = 0; slot < WINDOW_HOURS; slot++) {
+            long hour = hours[slot];
+            if (hour <= currentHour - WINDOW_HOURS || hour > currentHour) {
+                continue;
+            }
+            for (int i = 0; i < fields.length; i++) {
+                totalSums[i] += sums[slot][i];
+                totalCounts[i] += counts[slot][i];
+            }
+        }
+
+        Map<MeasurementField, Double> averages = new EnumMap<>(MeasurementField.class);
+        for (int i = 0; i < fields.length; i++) {
+            if (totalCounts[i] > 0) {
+                averages.put(fields[i], totalSums[i] / totalCounts[i]);
+            }
+        }
+        return averages;
+    }
+
+    private static int slot(long hour) {
+        return (int) Math.floorMod(hour, (long) WINDOW_HOURS);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.weather.service;
+
+import com.weather.dto.StationDataResponse;
+
+import java.util.function.Consumer;
+
+/**
+ * Datos de estaciones que se producen bajo demanda y se entregan de a una estación.
+ * Los parámetros ya están validados al obtener la instancia; la consulta se ejecuta al recorrerla.
+ */
+@FunctionalInterface
+public interface StationDataStream {
+
+    /**
+     * Ejecuta la consulta y entrega cada estación al consumidor a medida que está lista
+     */
+    void forEach(Consumer<StationDataResponse> consumer);
+}
\ No newline at end of file
@@ -0,0 +1,303 @@
+package com.weather.service;
+
+import com.weather.model.MeasurementField;
+import com.weather.model.MeasurementSeries;
+import com.weather.model.WeatherMeasurement;
+import com.weather.repository.WeatherRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caché con el historial reciente de cada estación, cubriendo la ventana weather.query.max-days.
+ * Cada estación se carga completa la primera vez que se consulta; después un refresco programado
+ * solo pide a InfluxDB las filas nuevas, desde la última fila más antigua entre las estaciones cargadas,
+ * y descarta las que salen de la ventana. Las filas nuevas también alimentan los promedios móviles de 7 días
+ * de cada estación.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StationHistoryCache {
+
+    /**
+     * Campos para los que se mantienen promedios móviles de 7 días
+     */
+    private static final List<MeasurementField> AVERAGE_FIELDS = List.of(
+            MeasurementField.TEMP,
+            MeasurementField.WIND_CHILL,
+            MeasurementField.DEW_POINT,
+            MeasurementField.WET_BULB,
+            MeasurementField.HUM);
+
+    private static final int AVERAGE_DAYS = 7;
+
+    /**
+     * Retraso máximo con el que se esperan filas de una estación; las que llevan más tiempo sin reportar
+     * no retienen el inicio de la consulta incremental
+     */
+    private static final Duration MAX_LAG = Duration.ofHours(1);
+
+    private final WeatherRepository weatherRepository;
+
+    @Value("${weather.query.max-days:7}")
+    private int maxDays;
+
+    /**
+     * Historial por estación. La carga inicial se publica como un future para que las consultas concurrentes
+     * de la misma estación esperen la misma carga sin ejecutarla dentro del mapa.
+     */
+    private final Map<String, CompletableFuture<StationHistory>> histories = new ConcurrentHashMap<>();
+
+    /**
+     * Indica si la caché cubre una ventana de N días
+     */
+    public boolean covers(int days) {
+        return days <= maxDays;
+    }
+
+    /**
+     * Devuelve las mediciones de la estación en los últimos N días, cargando su historial si hace falta
+     */
+    public List<WeatherMeasurement> getMeasurements(String stationId, int days) {
+        StationHistory history = history(stationId);
+        if (history == null) {
+            return Collections.emptyList();
+        }
+        return history.since(Instant.now().minus(Duration.ofDays(days)));
+    }
+
+    /**
+     * Indica si la caché cubre un intervalo que empieza en el instante indicado
+     */
+    public boolean covers(Instant start) {
+        return !start.isBefore(Instant.now().minus(Duration.ofDays(maxDays)));
+    }
+
+    /**
+     * Devuelve las mediciones de la estación en el intervalo [start, end), cargando su historial si hace falta
+     */
+    public List<WeatherMeasurement> getMeasurements(String stationId, Instant start, Instant end) {
+        StationHistory history = history(stationId);
+        if (history == null) {
+            return Collections.emptyList();
+        }
+        return history.series.since(start).until(end).asMeasurements();
+    }
+
+    /**
+     * Devuelve la serie de los últimos N días solo si la estación ya está en caché, sin cargarla
+     */
+    public Optional<MeasurementSeries> findSeries(String stationId, int days) {
+        StationHistory history = loaded(histories.get(stationId));
+        if (history == null || !covers(days)) {
+            return Optional.empty();
+        }
+        return Optional.of(history.series.since(Instant.now().minus(Duration.ofDays(days))));
+    }
+
+    /**
+     * Devuelve los promedios de 7 días de la estación mantenidos en memoria, cargando su historial si hace falta.
+     * Vacío si la ventana de la caché es menor a 7 días o la estación no tiene datos.
+     */
+    public Optional<Map<MeasurementField, Double>> getAverages7Days(String stationId) {
+        StationHistory history = history(stationId);
+        if (history == null || history.averages == null) {
+            return Optional.empty();
+        }
+        return Optional.of(history.averages.averages(Instant.now()));
+    }
+
+    /**
+     * Devuelve los promedios de 7 días de la estación solo si su historial ya está en caché, sin cargarlo
+     */
+    public Optional<Map<MeasurementField, Double>> findAverages7Days(String stationId) {
+        StationHistory history = loaded(histories.get(stationId));
+        if (history == null || history.averages == null) {
+            return Optional.empty();
+        }
+        return Optional.of(history.averages.averages(Instant.now()));
+    }
+
+    /**
+     * Añade las filas nuevas de las estaciones cargadas y descarta las que quedaron fuera de la ventana
+     */
+    @Scheduled(fixedDelayString = "${weather.history.refresh-interval:PT1M}",
+            initialDelayString = "${weather.history.refresh-interval:PT1M}")
+    public void refresh() {
+        Map<String, StationHistory> loaded = new LinkedHashMap<>();
+        histories.forEach((stationId, future) -> {
+            StationHistory history = loaded(future);
+            if (history != null) {
+                loaded.put(stationId, history);
+            }
+        });
+        if (loaded.isEmpty()) {
+            return;
+        }
+
+        try {
+            Instant now = Instant.now();
+            Instant start = oldestLastSeen(loaded.values(), now);
+            List<WeatherMeasurement> rows = weatherRepository.getAllStationsMeasurementsSince(start);
+
+            Map<String, List<WeatherMeasurement>> rowsByStation = new LinkedHashMap<>();
+            for (WeatherMeasurement row : rows) {
+                rowsByStation.computeIfAbsent(row.getStationId(), id -> new ArrayList<>()).add(row);
+            }
+
+            Instant cutoff = now.minus(Duration.ofDays(maxDays));
+            loaded.forEach((stationId, history) ->
+                    history.append(rowsByStation.getOrDefault(stationId, List.of()), cutoff));
+
+            log.debug("Station history cache refreshed with {} new rows for {} stations",
+                    rows.size(), rowsByStation.size());
+        } catch (RuntimeException e) {
+            log.warn("Could not refresh station history cache: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Inicio de la consulta incremental: la última fila más antigua entre las estaciones que reportaron
+     * dentro de MAX_LAG, así cada estación recibe las filas posteriores a su propia última fila aunque
+     * lleguen con retraso respecto de las demás
+     */
+    private static Instant oldestLastSeen(Iterable<StationHistory> loaded, Instant now) {
+        Instant floor = now.minus(MAX_LAG);
+        Instant oldest = null;
+        for (StationHistory history : loaded) {
+            Instant lastSeen = history.lastSeen();
+            if (lastSeen != null && lastSeen.isAfter(floor) && (oldest == null || lastSeen.isBefore(oldest))) {
+                oldest = lastSeen;
+            }
+        }
+        if (oldest == null) {
+            return floor;
+        }
+        return oldest.isAfter(now) ? now : oldest;
+    }
+
+    /**
+     * Devuelve el historial de la estación, cargándolo fuera del mapa si todavía no está.
+     * Las estaciones sin datos no quedan en el mapa, así se vuelven a consultar más adelante.
+     */
+    private StationHistory history(String stationId) {
+        CompletableFuture<StationHistory> future = histories.get(stationId);
+        if (future == null) {
+            CompletableFuture<StationHistory> created = new CompletableFuture<>();
+            future = histories.putIfAbsent(stationId, created);
+            if (future == null) {
+                return loadInto(stationId, created);
+            }
+        }
+
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private StationHistory loadInto(String stationId, CompletableFuture<StationHistory> future) {
+        StationHistory history;
+        try {
+            history = load(stationId);
+        } catch (Throwable e) {
+            histories.remove(stationId, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+        if (history == null) {
+            histories.remove(stationId, future);
+        }
+        future.complete(history);
+        return history;
+    }
+
+    /**
+     * Historial ya cargado, o null si la carga sigue en curso o falló
+     */
+    private static StationHistory loaded(CompletableFuture<StationHistory> future) {
+        if (future == null || !future.isDone() || future.isCompletedExceptionally()) {
+            return null;
+        }
+        return future.getNow(null);
+    }
+
+    private StationHistory load(String stationId) {
+        List<WeatherMeasurement> rows = weatherRepository.getStationMeasurements(stationId, maxDays);
+        if (rows.isEmpty()) {
+            return null;
+        }
+
+        MeasurementSeries series = MeasurementSeries.of(stationId, rows);
+        log.debug("Loaded {} rows of history for station {} ({} bytes per row)",
+                series.size(), stationId, series.retainedBytes() / series.size());
+        RollingAverages averages = covers(AVERAGE_DAYS) ? new RollingAverages(AVERAGE_FIELDS) : null;
+        return new StationHistory(series, averages);
+    }
+
+    /**
+     * Historial de una estación ordenado por tiempo, almacenado por columnas. Cada refresco publica
+     * una nueva serie inmutable para sus lectores, así no necesitan bloqueos.
+     */
+    private static final class StationHistory {
+
+        private volatile MeasurementSeries series;
+        private final RollingAverages averages;
+
+        private StationHistory(MeasurementSeries series, RollingAverages averages) {
+            this.series = series;
+            this.averages = averages;
+            if (averages != null) {
+                averages.add(series, 0);
+            }
+        }
+
+        /**
+         * Timestamp de la última fila de la estación, o null si la ventana quedó vacía
+         */
+        private Instant lastSeen() {
+            MeasurementSeries current = series;
+            return current.isEmpty() ? null : current.timestamp(current.size() - 1);
+        }
+
+        private List<WeatherMeasurement> since(Instant start) {
+            return series.since(start).asMeasurements();
+        }
+
+        private void append(List<WeatherMeasurement> newRows, Instant cutoff) {
+            MeasurementSeries previous = series;
+            long lastNanos = previous.isEmpty() ? Long.MIN_VALUE : previous.timestampNanos(previous.size() - 1);
+
+            // Las filas con el mismo timestamp que la última conocida se ignoran: la serie solo crece por el final
+            MeasurementSeries updated = previous.append(newRows, cutoff);
+            series = updated;
+
+            if (averages != null) {
+                int firstNew = updated.size();
+                while (firstNew > 0 && updated.timestampNanos(firstNew - 1) > lastNanos) {
+                    firstNew--;
+                }
+                averages.add(updated, firstNew);
+            }
+        }
+    }
+}
\ No newline at end of file
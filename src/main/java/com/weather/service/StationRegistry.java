@@ -0,0 +1,107 @@
+package com.weather.service;
+
+import com.weather.dto.StationBasicInfo;
+import com.weather.repository.WeatherRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Registro en memoria con los metadatos de las estaciones (nombre, coordenadas y elevación).
+ * Se carga al arrancar y se refresca periódicamente; las lecturas usan una instantánea inmutable
+ * que se reemplaza de forma atómica, sin consultar InfluxDB.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StationRegistry {
+
+    /**
+     * Ventana en la que una estación se considera activa
+     */
+    private static final Duration ACTIVE_WINDOW = Duration.ofHours(24);
+
+    private final WeatherRepository weatherRepository;
+    private final LatestMeasurementTable latestMeasurementTable;
+
+    @Value("${weather.query.max-days:7}")
+    private int maxDays;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    /**
+     * Recarga los metadatos de todas las estaciones con datos dentro de la ventana máxima de consulta
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${weather.stations.refresh-interval:PT10M}")
+    public void refresh() {
+        try {
+            List<StationBasicInfo> stations = weatherRepository.getStationsBasicInfo(maxDays);
+
+            Map<String, StationBasicInfo> byId = new LinkedHashMap<>();
+            for (StationBasicInfo station : stations) {
+                byId.put(station.getStationId(), station);
+            }
+
+            snapshot = new Snapshot(true, Map.copyOf(byId), List.copyOf(byId.values()));
+            log.info("Station registry refreshed with {} stations", byId.size());
+        } catch (RuntimeException e) {
+            log.warn("Could not refresh station registry, keeping previous snapshot: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Indica si el registro ya se cargó al menos una vez
+     */
+    public boolean isLoaded() {
+        return snapshot.loaded();
+    }
+
+    /**
+     * Busca los metadatos de una estación
+     */
+    public Optional<StationBasicInfo> find(String stationId) {
+        return Optional.ofNullable(snapshot.byId().get(stationId));
+    }
+
+    /**
+     * Indica si se sabe con certeza que la estación no existe: el registro está cargado y no la contiene,
+     * y tampoco aparece en la tabla de últimas mediciones. Esa tabla se actualiza cada pocos segundos,
+     * así una estación que empieza a reportar no queda oculta hasta el siguiente refresco del registro.
+     */
+    public boolean isUnknown(String stationId) {
+        Snapshot current = snapshot;
+        return current.loaded() && !current.byId().containsKey(stationId)
+                && latestMeasurementTable.getLatest(stationId).isEmpty();
+    }
+
+    /**
+     * Devuelve todas las estaciones registradas
+     */
+    public List<StationBasicInfo> getStations() {
+        return snapshot.stations();
+    }
+
+    /**
+     * Indica si la estación reportó datos en las últimas 24 horas
+     */
+    public boolean isActive(StationBasicInfo station) {
+        return station.getLastSeen() != null
+                && station.getLastSeen().isAfter(Instant.now().minus(ACTIVE_WINDOW));
+    }
+
+    /**
+     * Instantánea inmutable del registro
+     */
+    private record Snapshot(boolean loaded, Map<String, StationBasicInfo> byId, List<StationBasicInfo> stations) {
+        private static final Snapshot EMPTY = new Snapshot(false, Map.of(), List.of());
+    }
+}
\ No newline at end of file
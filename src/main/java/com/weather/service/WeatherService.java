@@ -1,7 +1,13 @@
 package com.weather.service;
 
+import com.weather.dto.FieldStatistics;
+import com.weather.dto.StationBasicInfo;
 import com.weather.dto.StationDataResponse;
 import com.weather.dto.StationInfo;
+import com.weather.dto.WeatherDataSimple;
+import com.weather.model.FieldProjection;
+import com.weather.model.MeasurementField;
+import com.weather.model.MeasurementSeries;
 import com.weather.model.WeatherMeasurement;
 import com.weather.repository.WeatherRepository;
 import lombok.RequiredArgsConstructor;
@@ -9,7 +15,11 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -20,28 +30,70 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class WeatherService {
 
+    /**
+     * Campos sobre los que se calculan estadísticas
+     */
+    private static final List<MeasurementField> STATISTICS_FIELDS = List.of(
+            MeasurementField.TEMP,
+            MeasurementField.HUM,
+            MeasurementField.WIND_SPEED_LAST,
+            MeasurementField.BAR_SEA_LEVEL,
+            MeasurementField.RAINFALL_DAY_MM);
+
+    /**
+     * Formato de una resolución explícita: cantidad y unidad (s, m, h o d)
+     */
+    private static final Pattern RESOLUTION_PATTERN = Pattern.compile("(\\d{1,6})([smhd])");
+
+    /**
+     * Puntos por estación que busca la resolución automática, del orden del ancho en píxeles de un gráfico
+     */
+    private static final int AUTO_RESOLUTION_POINTS = 800;
+
+    /**
+     * Resoluciones "redondas" entre las que elige la resolución automática
+     */
+    private static final List<Duration> AUTO_RESOLUTIONS = List.of(
+            Duration.ofMinutes(1), Duration.ofMinutes(2), Duration.ofMinutes(5), Duration.ofMinutes(10),
+            Duration.ofMinutes(15), Duration.ofMinutes(30), Duration.ofHours(1), Duration.ofHours(2),
+            Duration.ofHours(3), Duration.ofHours(6), Duration.ofHours(12), Duration.ofDays(1));
+
     private final WeatherRepository weatherRepository;
+    private final StationRegistry stationRegistry;
+    private final LatestMeasurementTable latestMeasurementTable;
+    private final StationHistoryCache stationHistoryCache;
+    private final DaySegmentCache daySegmentCache;
+    private final ResponseCache responseCache;
 
     @Value("${weather.query.default-days:3}")
     private int defaultDays;
 
+    @Value("${weather.query.max-days:7}")
+    private int maxDays;
+
     /**
      * Obtiene todas las estaciones activas con su información básica
      */
     public List<StationInfo> getAllStations() {
         log.info("Fetching all active stations");
 
-        List<String> stationIds = weatherRepository.getActiveStations();
-        List<StationInfo> stations = new ArrayList<>();
+        // Los metadatos se sirven desde el registro en memoria; solo se consulta InfluxDB si aún no se cargó
+        List<StationBasicInfo> basicInfos = stationRegistry.isLoaded()
+                ? stationRegistry.getStations()
+                : weatherRepository.getStationsBasicInfo(1);
+        List<StationInfo> stations = new ArrayList<>(basicInfos.size());
 
-        for (String stationId : stationIds) {
-            Map<String, Object> basicInfo = weatherRepository.getStationBasicInfo(stationId);
+        for (StationBasicInfo basicInfo : basicInfos) {
+            // El registro también conserva las estaciones que dejaron de reportar dentro de max-days
+            if (!stationRegistry.isActive(basicInfo)) {
+                continue;
+            }
 
             StationInfo info = StationInfo.builder()
-                    .stationId(stationId)
-                    .stationName((String) basicInfo.get("stationName"))
-                    .latitude((Double) basicInfo.get("latitude"))
-                    .longitude((Double) basicInfo.get("longitude"))
+                    .stationId(basicInfo.getStationId())
+                    .stationName(basicInfo.getStationName())
+                    .latitude(basicInfo.getLatitude())
+                    .longitude(basicInfo.getLongitude())
                     .active(true)
                     .build();
 
@@ -52,21 +104,222 @@ public class WeatherService {
     }
 
     /**
-     * Obtiene datos meteorológicos simplificados de una estación
+     * Obtiene datos meteorológicos simplificados de una estación, o null si no hay datos
      */
-    public Map<String, Object> getStationWeatherDataSimple(String stationId) {
+    public WeatherDataSimple getStationWeatherDataSimple(String stationId) {
         log.info("Fetching simplified weather data for station {}", stationId);
-        return weatherRepository.getStationWeatherData(stationId);
+
+        if (stationRegistry.isUnknown(stationId)) {
+            log.warn("Station {} is not registered", stationId);
+            return null;
+        }
+
+        // Promedios mantenidos en memoria por la caché de historial y valores actuales de la tabla de últimas
+        // mediciones; solo se consulta InfluxDB si alguna de las dos fuentes no está disponible
+        Optional<Map<MeasurementField, Double>> averages = latestMeasurementTable.isLoaded()
+                ? stationHistoryCache.getAverages7Days(stationId)
+                : Optional.empty();
+        if (averages.isEmpty()) {
+            return weatherRepository.getStationWeatherData(stationId);
+        }
+        return simpleFromMemory(stationId, averages.get());
     }
 
     /**
-     * Obtiene los datos de una estación específica
+     * Obtiene datos meteorológicos simplificados de las estaciones indicadas, o de todas si no se indica ninguna.
+     * Los ids que el registro no conoce se descartan antes de armar la consulta. Las estaciones con historial
+     * en caché se resuelven en memoria, igual que en la consulta de una sola estación; el resto se pide
+     * a InfluxDB en una única consulta, sin forzar la carga de su historial.
      */
-    public StationDataResponse getStationData(String stationId, Integer days) {
-        int queryDays = days != null ? days : defaultDays;
-        log.info("Fetching data for station {} for the last {} days", stationId, queryDays);
+    public List<WeatherDataSimple> getStationsWeatherDataSimple(List<String> stationIds) {
+        List<String> ids = stationIds != null ? stationIds : Collections.emptyList();
+        log.info("Fetching simplified weather data for {} stations", ids.isEmpty() ? "all" : ids.size());
 
-        List<WeatherMeasurement> measurements = weatherRepository.getStationMeasurements(stationId, queryDays);
+        if (ids.isEmpty()) {
+            if (!stationRegistry.isLoaded()) {
+                return weatherRepository.getStationsWeatherData(ids);
+            }
+            ids = stationRegistry.getStations().stream()
+                    .map(StationBasicInfo::getStationId)
+                    .collect(Collectors.toList());
+        }
+
+        List<WeatherDataSimple> result = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        for (String stationId : new LinkedHashSet<>(ids)) {
+            if (stationRegistry.isUnknown(stationId)) {
+                log.warn("Station {} is not registered", stationId);
+                continue;
+            }
+
+            Optional<Map<MeasurementField, Double>> averages = latestMeasurementTable.isLoaded()
+                    ? stationHistoryCache.findAverages7Days(stationId)
+                    : Optional.empty();
+            if (averages.isEmpty()) {
+                missing.add(stationId);
+                continue;
+            }
+
+            WeatherDataSimple data = simpleFromMemory(stationId, averages.get());
+            if (data != null) {
+                result.add(data);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            result.addAll(weatherRepository.getStationsWeatherData(missing));
+        }
+        return result;
+    }
+
+    /**
+     * Arma los datos simplificados con los valores actuales de la tabla de últimas mediciones y los promedios
+     * de 7 días mantenidos en memoria, o null si la estación no tiene ninguno de los dos
+     */
+    private WeatherDataSimple simpleFromMemory(String stationId, Map<MeasurementField, Double> avg) {
+        WeatherDataSimple data = WeatherDataSimple.builder().stationId(stationId).build();
+        latestMeasurementTable.getLatest(stationId)
+                .filter(latest -> latest.getTimestamp().isAfter(Instant.now().minus(Duration.ofHours(1))))
+                .ifPresent(latest -> {
+                    data.setTimestamp(latest.getTimestamp());
+                    data.setStationName(latest.getStationName());
+                    data.setTemp(latest.getTemp());
+                    data.setWindChill(latest.getWindChill());
+                    data.setDewPoint(latest.getDewPoint());
+                    data.setWetBulb(latest.getWetBulb());
+                    data.setHum(latest.getHum());
+                    data.setWindSpeedLast(latest.getWindSpeedLast());
+                    data.setWindDirLast(latest.getWindDirLast());
+                    data.setRainfallDayMm(latest.getRainfallDayMm());
+                    data.setRainfallMonthMm(latest.getRainfallMonthMm());
+                });
+
+        data.setTempAvg7Days(avg.get(MeasurementField.TEMP));
+        data.setWindChillAvg7Days(avg.get(MeasurementField.WIND_CHILL));
+        data.setDewPointAvg7Days(avg.get(MeasurementField.DEW_POINT));
+        data.setWetBulbAvg7Days(avg.get(MeasurementField.WET_BULB));
+        data.setHumAvg7Days(avg.get(MeasurementField.HUM));
+
+        if (data.getTimestamp() == null && avg.isEmpty()) {
+            return null;
+        }
+        return data;
+    }
+
+    /**
+     * Obtiene los datos de una estación específica en los últimos N días o en el intervalo [start, end),
+     * opcionalmente agregados a la resolución indicada (por ejemplo 5m, 1h o auto), reducidos
+     * a un máximo de puntos con LTTB o M4 guiados por un campo y limitados a las propiedades pedidas
+     */
+    public StationDataResponse getStationData(String stationId, Integer days, Instant start, Instant end,
+                                              String resolution, Integer maxPoints, String downsample,
+                                              String downsampleField, FieldProjection projection) {
+        QueryWindow window = resolveWindow(days, start, end);
+        Duration every = resolveResolution(resolution, window);
+        Downsampler.Spec spec = resolveDownsampling(maxPoints, downsample, downsampleField);
+        return responseCache.get("station-data", Arrays.asList(stationId, window, every, spec, projection),
+                () -> loadStationData(stationId, window, every, spec, queryColumns(projection, spec)));
+    }
+
+    /**
+     * Obtiene los datos de todas las estaciones en los últimos N días o en el intervalo [start, end),
+     * opcionalmente agregados a la resolución indicada (por ejemplo 5m, 1h o auto), reducidos
+     * a un máximo de puntos por estación con LTTB o M4 guiados por un campo y limitados a las propiedades pedidas
+     */
+    public Map<String, StationDataResponse> getAllStationsData(Integer days, Instant start, Instant end,
+                                                               String resolution, Integer maxPoints,
+                                                               String downsample, String downsampleField,
+                                                               FieldProjection projection) {
+        QueryWindow window = resolveWindow(days, start, end);
+        Duration every = resolveResolution(resolution, window);
+        Downsampler.Spec spec = resolveDownsampling(maxPoints, downsample, downsampleField);
+        return responseCache.get("all-stations-data", Arrays.asList(window, every, spec, projection),
+                () -> loadAllStationsData(window, every, spec, queryColumns(projection, spec)));
+    }
+
+    /**
+     * Igual que {@link #getAllStationsData}, pero entrega las estaciones de a una para escribirlas a medida
+     * que están listas. Los intervalos crudos que no cubre la caché de segmentos se leen de InfluxDB estación
+     * por estación, sin acumular el resultado ni pasar por la caché de respuestas; el resto de los casos
+     * recorre el resultado de getAllStationsData.
+     */
+    public StationDataStream streamAllStationsData(Integer days, Instant start, Instant end,
+                                                   String resolution, Integer maxPoints,
+                                                   String downsample, String downsampleField,
+                                                   FieldProjection projection) {
+        QueryWindow window = resolveWindow(days, start, end);
+        Duration every = resolveResolution(resolution, window);
+        Downsampler.Spec spec = resolveDownsampling(maxPoints, downsample, downsampleField);
+
+        if (every != null || daySegmentCache.covers(window.from())) {
+            return consumer -> getAllStationsData(days, start, end, resolution, maxPoints, downsample,
+                    downsampleField, projection).values().forEach(consumer);
+        }
+
+        return streamFromInflux(window, spec, projection);
+    }
+
+    /**
+     * Mediciones crudas de todas las estaciones para exportación masiva. Siempre se leen de InfluxDB
+     * estación por estación, aunque el intervalo esté en la caché de segmentos: no se arma el resultado
+     * completo ni pasa por la caché de respuestas, y si el consumidor falla la consulta se cancela.
+     */
+    public StationDataStream exportAllStationsData(Integer days, Instant start, Instant end,
+                                                   FieldProjection projection) {
+        return streamFromInflux(resolveWindow(days, start, end), null, projection);
+    }
+
+    /**
+     * Recorre el intervalo con una sola consulta agrupada por estación y entrega cada estación
+     * en cuanto termina de leerse
+     */
+    private StationDataStream streamFromInflux(QueryWindow window, Downsampler.Spec spec,
+                                               FieldProjection projection) {
+        return consumer -> {
+            log.info("Streaming data for all stations for {}", window);
+            weatherRepository.streamAllStationsMeasurementsBetween(window.from(), window.to(),
+                    queryColumns(projection, spec), (stationId, measurements) -> {
+                        if (!measurements.isEmpty()) {
+                            consumer.accept(buildStationResponse(stationId, downsample(stationId, measurements, spec)));
+                        }
+                    });
+        };
+    }
+
+    /**
+     * Obtiene las últimas mediciones de todas las estaciones
+     */
+    public List<WeatherMeasurement> getLatestMeasurements() {
+        return responseCache.get("latest-measurements", List.of(), this::loadLatestMeasurements);
+    }
+
+    /**
+     * Obtiene estadísticas resumidas de una estación
+     */
+    public Map<String, Object> getStationStatistics(String stationId, Integer days) {
+        int queryDays = resolveWindow(days, null, null).days();
+        return responseCache.get("station-statistics", List.of(stationId, queryDays),
+                () -> loadStationStatistics(stationId, queryDays));
+    }
+
+    private StationDataResponse loadStationData(String stationId, QueryWindow window, Duration every,
+                                                Downsampler.Spec spec, Set<String> columns) {
+        log.info("Fetching data for station {} for {} at resolution {}", stationId, window, every);
+
+        // El registro solo conoce las estaciones que reportaron dentro de max-days: una ventana absoluta
+        // anterior puede pedir una estación que ya no reporta, así que en ese caso no se descarta
+        boolean registryCovers = !window.isAbsolute() || stationHistoryCache.covers(window.start());
+
+        // Los datos agregados se calculan en InfluxDB; las cachés en memoria solo guardan datos crudos
+        List<WeatherMeasurement> measurements;
+        if (registryCovers && stationRegistry.isUnknown(stationId)) {
+            measurements = Collections.emptyList();
+        } else if (every != null) {
+            measurements = weatherRepository.getStationMeasurementsAggregated(
+                    stationId, window.from(), window.end(), every, columns);
+        } else {
+            measurements = getStationMeasurements(stationId, window, columns);
+        }
 
         if (measurements.isEmpty()) {
             log.warn("No measurements found for station {}", stationId);
@@ -78,46 +331,34 @@ public class WeatherService {
                     .build();
         }
 
-        WeatherMeasurement latest = measurements.get(measurements.size() - 1);
-
-        return StationDataResponse.builder()
-                .stationId(stationId)
-                .stationName(latest.getStationName())
-                .latitude(latest.getLatitude())
-                .longitude(latest.getLongitude())
-                .totalMeasurements(measurements.size())
-                .measurements(measurements)
-                .build();
+        return buildStationResponse(stationId, downsample(stationId, measurements, spec));
     }
 
-    /**
-     * Obtiene los datos de todas las estaciones
-     */
-    public Map<String, StationDataResponse> getAllStationsData(Integer days) {
-        int queryDays = days != null ? days : defaultDays;
-        log.info("Fetching data for all stations for the last {} days", queryDays);
-
-        List<WeatherMeasurement> allMeasurements = weatherRepository.getAllStationsMeasurements(queryDays);
-
-        Map<String, List<WeatherMeasurement>> measurementsByStation = allMeasurements.stream()
-                .collect(Collectors.groupingBy(WeatherMeasurement::getStationId));
+    private Map<String, StationDataResponse> loadAllStationsData(QueryWindow window, Duration every,
+                                                                 Downsampler.Spec spec, Set<String> columns) {
+        log.info("Fetching data for all stations for {} at resolution {}", window, every);
+
+        // Dentro de la ventana de la caché los días cerrados salen de los segmentos diarios; fuera de ella
+        // el repositorio divide el intervalo en tramos y devuelve cada estación repartida en varios grupos.
+        // Los datos agregados siempre se calculan en InfluxDB. Las columnas pedidas solo filtran las consultas
+        // a InfluxDB; los segmentos guardan todas y la proyección se aplica al serializar.
+        Instant from = window.from();
+        Map<String, List<WeatherMeasurement>> measurementsByStation;
+        if (every != null) {
+            measurementsByStation = groupByStation(
+                    weatherRepository.getAllStationsMeasurementsAggregated(from, window.end(), every, columns));
+        } else if (daySegmentCache.covers(from)) {
+            measurementsByStation = daySegmentCache.getAllStationsMeasurements(from, window.end());
+        } else {
+            measurementsByStation = groupByStation(
+                    weatherRepository.getAllStationsMeasurementsBetween(from, window.to(), columns));
+        }
 
-        Map<String, StationDataResponse> result = new HashMap<>();
+        Map<String, StationDataResponse> result = new LinkedHashMap<>();
 
         measurementsByStation.forEach((stationId, measurements) -> {
             if (!measurements.isEmpty()) {
-                WeatherMeasurement latest = measurements.stream()
-                        .max(Comparator.comparing(WeatherMeasurement::getTimestamp))
-                        .orElse(measurements.get(0));
-
-                result.put(stationId, StationDataResponse.builder()
-                        .stationId(stationId)
-                        .stationName(latest.getStationName())
-                        .latitude(latest.getLatitude())
-                        .longitude(latest.getLongitude())
-                        .totalMeasurements(measurements.size())
-                        .measurements(measurements)
-                        .build());
+                result.put(stationId, buildStationResponse(stationId, downsample(stationId, measurements, spec)));
             }
         });
 
@@ -125,74 +366,253 @@ public class WeatherService {
         return result;
     }
 
-    /**
-     * Obtiene las últimas mediciones de todas las estaciones
-     */
-    public List<WeatherMeasurement> getLatestMeasurements() {
+    private List<WeatherMeasurement> loadLatestMeasurements() {
         log.info("Fetching latest measurements for all stations");
+
+        // La tabla en memoria la mantiene el poller; solo se consulta InfluxDB antes de la primera carga
+        if (latestMeasurementTable.isLoaded()) {
+            return latestMeasurementTable.getLatest();
+        }
         return weatherRepository.getLatestMeasurements();
     }
 
-    /**
-     * Obtiene estadísticas resumidas de una estación
-     */
-    public Map<String, Object> getStationStatistics(String stationId, Integer days) {
-        int queryDays = days != null ? days : defaultDays;
+    private Map<String, Object> loadStationStatistics(String stationId, int queryDays) {
         log.info("Calculating statistics for station {} for the last {} days", stationId, queryDays);
 
-        List<WeatherMeasurement> measurements = weatherRepository.getStationMeasurements(stationId, queryDays);
+        if (stationRegistry.isUnknown(stationId)) {
+            log.warn("Station {} is not registered", stationId);
+            return Collections.emptyMap();
+        }
+
+        // Si la estación ya está en la caché de historial se calcula en memoria sobre las columnas;
+        // si no, InfluxDB calcula los agregados y solo devuelve una fila por campo y estadístico
+        Optional<MeasurementSeries> cached = stationHistoryCache.findSeries(stationId, queryDays);
+        Map<MeasurementField, FieldStatistics> fieldStats = cached
+                .map(series -> summarize(series, STATISTICS_FIELDS))
+                .orElseGet(() -> weatherRepository.getStationStatistics(stationId, queryDays, STATISTICS_FIELDS));
 
-        if (measurements.isEmpty()) {
+        long totalMeasurements = cached.map(series -> (long) series.size())
+                .orElseGet(() -> fieldStats.values().stream().mapToLong(FieldStatistics::getCount).max().orElse(0));
+
+        if (totalMeasurements == 0) {
             return Collections.emptyMap();
         }
 
         Map<String, Object> stats = new HashMap<>();
         stats.put("stationId", stationId);
-        stats.put("totalMeasurements", measurements.size());
+        stats.put("totalMeasurements", totalMeasurements);
         stats.put("period", queryDays + " days");
 
-        // Calcular estadísticas para temperatura
-        calculateFieldStats(measurements, "temp", stats,
-                m -> m.getTemp() != null ? m.getTemp() : null);
+        putFieldStats(stats, "temp", fieldStats.get(MeasurementField.TEMP));
+        putFieldStats(stats, "hum", fieldStats.get(MeasurementField.HUM));
+        putFieldStats(stats, "windSpeedLast", fieldStats.get(MeasurementField.WIND_SPEED_LAST));
+        putFieldStats(stats, "barSeaLevel", fieldStats.get(MeasurementField.BAR_SEA_LEVEL));
 
-        // Calcular estadísticas para humedad
-        calculateFieldStats(measurements, "hum", stats,
-                m -> m.getHum() != null ? m.getHum() : null);
+        // Calcular total de lluvia
+        FieldStatistics rainfall = fieldStats.get(MeasurementField.RAINFALL_DAY_MM);
+        stats.put("totalRainfallDayMm", rainfall != null && rainfall.getMax() != null ? rainfall.getMax() : 0.0);
 
-        // Calcular estadísticas para velocidad del viento
-        calculateFieldStats(measurements, "windSpeedLast", stats,
-                m -> m.getWindSpeedLast() != null ? m.getWindSpeedLast() : null);
+        return stats;
+    }
 
-        // Calcular estadísticas para presión atmosférica
-        calculateFieldStats(measurements, "barSeaLevel", stats,
-                m -> m.getBarSeaLevel() != null ? m.getBarSeaLevel() : null);
+    /**
+     * Obtiene las mediciones de una estación desde la caché de historial si la ventana está cubierta;
+     * si no, el repositorio consulta el intervalo dividido en tramos, pidiendo solo las columnas indicadas
+     */
+    private List<WeatherMeasurement> getStationMeasurements(String stationId, QueryWindow window,
+                                                            Set<String> columns) {
+        if (!window.isAbsolute()) {
+            return stationHistoryCache.getMeasurements(stationId, window.days());
+        }
+        if (stationHistoryCache.covers(window.start())) {
+            return stationHistoryCache.getMeasurements(stationId, window.start(), window.to());
+        }
+        return weatherRepository.getStationMeasurementsBetween(stationId, window.start(), window.to(), columns);
+    }
 
-        // Calcular total de lluvia
-        double totalRainfall = measurements.stream()
-                .filter(m -> m.getRainfallDayMm() != null)
-                .mapToDouble(WeatherMeasurement::getRainfallDayMm)
-                .max()
-                .orElse(0.0);
-        stats.put("totalRainfallDayMm", totalRainfall);
+    /**
+     * Columnas a pedir a InfluxDB para una proyección; null si se piden todas. Incluye el campo
+     * que guía la reducción de puntos aunque no se vaya a serializar.
+     */
+    private static Set<String> queryColumns(FieldProjection projection, Downsampler.Spec spec) {
+        if (projection == null) {
+            return null;
+        }
+        Set<String> columns = new LinkedHashSet<>(projection.getColumns());
+        if (spec != null) {
+            columns.add(spec.field().getColumn());
+        }
+        return columns;
+    }
 
-        return stats;
+    /**
+     * Interpreta el parámetro de resolución; null si no se pidió agregación. En modo auto elige la menor
+     * resolución redonda que deja unos 800 puntos por estación en la ventana.
+     */
+    private Duration resolveResolution(String resolution, QueryWindow window) {
+        if (resolution == null || resolution.isBlank()) {
+            return null;
+        }
+
+        if ("auto".equalsIgnoreCase(resolution)) {
+            Duration target = Duration.between(window.from(), window.to()).dividedBy(AUTO_RESOLUTION_POINTS);
+            return AUTO_RESOLUTIONS.stream()
+                    .filter(candidate -> candidate.compareTo(target) >= 0)
+                    .findFirst()
+                    .orElse(AUTO_RESOLUTIONS.get(AUTO_RESOLUTIONS.size() - 1));
+        }
+
+        Matcher matcher = RESOLUTION_PATTERN.matcher(resolution);
+        if (!matcher.matches() || Long.parseLong(matcher.group(1)) == 0) {
+            throw new IllegalArgumentException("resolution must be 'auto' or a positive duration such as 5m or 1h");
+        }
+
+        long amount = Long.parseLong(matcher.group(1));
+        return switch (matcher.group(2)) {
+            case "s" -> Duration.ofSeconds(amount);
+            case "m" -> Duration.ofMinutes(amount);
+            case "h" -> Duration.ofHours(amount);
+            default -> Duration.ofDays(amount);
+        };
     }
 
-    private void calculateFieldStats(List<WeatherMeasurement> measurements,
-                                     String fieldName,
-                                     Map<String, Object> stats,
-                                     java.util.function.Function<WeatherMeasurement, Double> getter) {
-        DoubleSummaryStatistics fieldStats = measurements.stream()
-                .map(getter)
-                .filter(Objects::nonNull)
-                .mapToDouble(Double::doubleValue)
-                .summaryStatistics();
+    /**
+     * Interpreta los parámetros de reducción de puntos; null si no se pidió maxPoints
+     */
+    private Downsampler.Spec resolveDownsampling(Integer maxPoints, String downsample, String downsampleField) {
+        if (maxPoints == null) {
+            return null;
+        }
+
+        Downsampler.Method method;
+        try {
+            method = downsample != null ? Downsampler.Method.valueOf(downsample.toUpperCase(Locale.ROOT))
+                    : Downsampler.Method.LTTB;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("downsample must be 'lttb' or 'm4'");
+        }
+
+        int minPoints = method == Downsampler.Method.M4 ? 4 : 3;
+        if (maxPoints < minPoints) {
+            throw new IllegalArgumentException("maxPoints must be at least " + minPoints + " for "
+                    + method.name().toLowerCase(Locale.ROOT));
+        }
+
+        MeasurementField field = MeasurementField.fromColumn(downsampleField != null ? downsampleField : "temp");
+        if (field == null) {
+            throw new IllegalArgumentException("Unknown downsampleField: " + downsampleField);
+        }
+
+        return new Downsampler.Spec(method, maxPoints, field);
+    }
+
+    /**
+     * Reduce las mediciones de una estación al presupuesto de puntos, si se pidió. Las mediciones que vienen
+     * de la caché de historial son vistas de su serie, que se reduce directamente sin volver a copiarla.
+     */
+    private List<WeatherMeasurement> downsample(String stationId, List<WeatherMeasurement> measurements,
+                                                Downsampler.Spec spec) {
+        if (spec == null || measurements.size() <= spec.maxPoints()) {
+            return measurements;
+        }
+        return Downsampler.apply(MeasurementSeries.from(stationId, measurements), spec).asMeasurements();
+    }
+
+    private static Map<String, List<WeatherMeasurement>> groupByStation(List<WeatherMeasurement> measurements) {
+        return measurements.stream()
+                .collect(Collectors.groupingBy(WeatherMeasurement::getStationId, LinkedHashMap::new, Collectors.toList()));
+    }
+
+    /**
+     * Valida los parámetros de tiempo: days o un intervalo start/end, nunca más largo que weather.query.max-days.
+     * Sin start se toman los days por defecto antes de end; sin end el intervalo llega hasta ahora.
+     */
+    private QueryWindow resolveWindow(Integer days, Instant start, Instant end) {
+        if (start == null && end == null) {
+            int queryDays = days != null ? days : defaultDays;
+            if (queryDays < 1 || queryDays > maxDays) {
+                throw new IllegalArgumentException("days must be between 1 and " + maxDays);
+            }
+            return QueryWindow.lastDays(queryDays);
+        }
+
+        if (days != null) {
+            throw new IllegalArgumentException("days cannot be combined with start/end");
+        }
+
+        Instant to = end != null ? end : Instant.now();
+        Instant from = start != null ? start : to.minus(Duration.ofDays(defaultDays));
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("start must be before end");
+        }
+        if (Duration.between(from, to).compareTo(Duration.ofDays(maxDays)) > 0) {
+            throw new IllegalArgumentException("Time range cannot exceed " + maxDays + " days");
+        }
+        return QueryWindow.between(from, end);
+    }
+
+    /**
+     * Construye la respuesta de una estación; nombre y coordenadas salen del registro de estaciones
+     * y, si no está registrada, de la última medición
+     */
+    private StationDataResponse buildStationResponse(String stationId, List<WeatherMeasurement> measurements) {
+        WeatherMeasurement latest = measurements.get(measurements.size() - 1);
+        Optional<StationBasicInfo> info = stationRegistry.find(stationId);
+
+        return StationDataResponse.builder()
+                .stationId(stationId)
+                .stationName(info.map(StationBasicInfo::getStationName).orElse(latest.getStationName()))
+                .latitude(info.map(StationBasicInfo::getLatitude).orElse(latest.getLatitude()))
+                .longitude(info.map(StationBasicInfo::getLongitude).orElse(latest.getLongitude()))
+                .totalMeasurements(measurements.size())
+                .measurements(measurements)
+                .build();
+    }
+
+    /**
+     * Calcula mínimo, máximo y promedio de cada campo recorriendo directamente sus columnas
+     */
+    private Map<MeasurementField, FieldStatistics> summarize(MeasurementSeries series, List<MeasurementField> fields) {
+        Map<MeasurementField, FieldStatistics> result = new EnumMap<>(MeasurementField.class);
+
+        for (MeasurementField field : fields) {
+            if (!series.hasField(field)) {
+                continue;
+            }
+
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            double sum = 0;
+            long count = 0;
+            for (int row = 0; row < series.size(); row++) {
+                double value = series.value(field, row);
+                if (!Double.isNaN(value)) {
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                    sum += value;
+                    count++;
+                }
+            }
+
+            if (count > 0) {
+                result.put(field, FieldStatistics.builder()
+                        .min(min)
+                        .max(max)
+                        .avg(sum / count)
+                        .count(count)
+                        .build());
+            }
+        }
+
+        return result;
+    }
 
-        if (fieldStats.getCount() > 0) {
+    private void putFieldStats(Map<String, Object> stats, String fieldName, FieldStatistics fieldStats) {
+        if (fieldStats != null && fieldStats.getCount() > 0) {
             Map<String, Double> fieldMap = new HashMap<>();
             fieldMap.put("min", fieldStats.getMin());
             fieldMap.put("max", fieldStats.getMax());
-            fieldMap.put("avg", fieldStats.getAverage());
+            fieldMap.put("avg", fieldStats.getAvg());
             stats.put(fieldName, fieldMap);
         }
     }
@@ -0,0 +1,112 @@
+package com.weather.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.weather.dto.StationDataResponse;
+import com.weather.model.MeasurementSeries;
+import com.weather.model.WeatherMeasurement;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StationDataJsonWriterTest {
+
+    private static final String STATION = "s1";
+    private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void columnarWritesEveryRowOfTheBackingSeries() throws IOException {
+        MeasurementSeries series = MeasurementSeries.of(STATION, rows(0, 10)).since(time(2));
+
+        JsonNode station = writeColumnar(series.asMeasurements());
+
+        assertEquals(8, station.get("totalMeasurements").asInt());
+        JsonNode columns = station.get("columns");
+        assertEquals(8, columns.get("time").size());
+        assertEquals(time(2).toEpochMilli(), columns.get("time").get(0).asLong());
+        assertEquals(8, columns.get("temp").size());
+        assertTrue(columns.get("temp").get(0).isNumber());
+    }
+
+    @Test
+    void columnarTotalCountsOnlyWrittenRows() throws IOException {
+        // La última fila repite un instante y no entra en la serie
+        List<WeatherMeasurement> measurements = new ArrayList<>(rows(0, 5));
+        measurements.addAll(rows(4, 1));
+
+        JsonNode station = writeColumnar(measurements);
+
+        assertEquals(5, station.get("totalMeasurements").asInt());
+        assertEquals(5, station.get("columns").get("time").size());
+    }
+
+    @Test
+    void columnarSkipsFieldsPresentOnlyBeforeTheWindow() throws IOException {
+        // Humedad y tendencia solo en las primeras filas del historial
+        List<WeatherMeasurement> history = new ArrayList<>();
+        for (WeatherMeasurement row : rows(0, 10)) {
+            history.add(row.getTimestamp().isBefore(time(5))
+                    ? WeatherMeasurement.builder()
+                    .stationId(STATION)
+                    .stationName(row.getStationName())
+                    .timestamp(row.getTimestamp())
+                    .temp(row.getTemp())
+                    .hum(50.0)
+                    .barTrend("steady")
+                    .build()
+                    : row);
+        }
+        MeasurementSeries window = MeasurementSeries.of(STATION, history).since(time(5));
+
+        JsonNode columns = writeColumnar(window.asMeasurements()).get("columns");
+
+        assertEquals(5, columns.get("time").size());
+        assertTrue(columns.has("temp"));
+        assertFalse(columns.has("hum"));
+        assertFalse(columns.has("barTrend"));
+    }
+
+    private JsonNode writeColumnar(List<WeatherMeasurement> measurements) throws IOException {
+        StationDataResponse response = StationDataResponse.builder()
+                .stationId(STATION)
+                .stationName("Station 1")
+                .totalMeasurements(measurements.size())
+                .measurements(measurements)
+                .build();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (StationDataJsonWriter writer = new StationDataJsonWriter(objectMapper, null,
+                StationDataJsonWriter.Format.COLUMNAR, out)) {
+            writer.writeStation(response);
+        }
+        return objectMapper.readTree(out.toByteArray());
+    }
+
+    private static List<WeatherMeasurement> rows(int from, int count) {
+        List<WeatherMeasurement> rows = new ArrayList<>(count);
+        for (int row = from; row < from + count; row++) {
+            rows.add(WeatherMeasurement.builder()
+                    .stationId(STATION)
+                    .stationName("Station 1")
+                    .timestamp(time(row))
+                    .temp(20.0 + row)
+                    .build());
+        }
+        return rows;
+    }
+
+    private static Instant time(int row) {
+        return START.plus(Duration.ofMinutes(row));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,193 @@
+package com.weather.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MeasurementSeriesTest {
+
+    private static final String STATION = "s1";
+    private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+    private static final Duration STEP = Duration.ofMinutes(1);
+    private static final MeasurementField[] ALL = MeasurementField.values();
+
+    @Test
+    void reportsBytesPerRowForBothLayouts() {
+        List<WeatherMeasurement> rows = rows(0, 10_080, ALL);
+
+        MeasurementSeries series = MeasurementSeries.of(STATION, rows);
+
+        long columnar = series.retainedBytes() / series.size();
+        long boxed = boxedBytesPerRow(rows.get(0));
+        System.out.printf("MeasurementSeries: %d bytes per row columnar, %d bytes per row as WeatherMeasurement%n",
+                columnar, boxed);
+        assertEquals(rows, series.asMeasurements());
+        assertTrue(columnar < boxed, columnar + " >= " + boxed);
+    }
+
+    @Test
+    void reservesOnlyColumnsThatAppear() {
+        MeasurementSeries series = MeasurementSeries.of(STATION, rows(0, 100, MeasurementField.TEMP));
+
+        assertTrue(series.hasField(MeasurementField.TEMP));
+        assertFalse(series.hasField(MeasurementField.HUM));
+        assertFalse(series.hasBarTrend());
+        // timestamp, nombre de estación y una sola columna, con capacidad de a lo sumo el doble de filas
+        assertTrue(series.retainedBytes() / series.size() <= 2 * (8 + 4 + 8));
+    }
+
+    @Test
+    void appendKeepsOnlyRowsNewerThanTheLastOne() {
+        MeasurementSeries series = MeasurementSeries.of(STATION, rows(0, 10, MeasurementField.TEMP));
+
+        List<WeatherMeasurement> incoming = new ArrayList<>(rows(8, 5, MeasurementField.TEMP));
+        MeasurementSeries updated = series.append(incoming, Instant.MIN);
+
+        assertEquals(13, updated.size());
+        assertEquals(10, series.size());
+        assertEquals(rows(0, 13, MeasurementField.TEMP), updated.asMeasurements());
+        assertSame(updated, updated.append(rows(5, 8, MeasurementField.TEMP), Instant.MIN));
+    }
+
+    @Test
+    void appendEvictsRowsBeforeCutoff() {
+        MeasurementSeries series = MeasurementSeries.of(STATION, rows(0, 10, MeasurementField.TEMP));
+
+        MeasurementSeries evicted = series.append(List.of(), time(4));
+        MeasurementSeries appended = evicted.append(rows(10, 100, MeasurementField.TEMP), time(50));
+
+        assertEquals(6, evicted.size());
+        assertEquals(time(4), evicted.timestamp(0));
+        assertEquals(60, appended.size());
+        assertEquals(time(50), appended.timestamp(0));
+        assertEquals(rows(50, 60, MeasurementField.TEMP), appended.asMeasurements());
+    }
+
+    @Test
+    void sinceAndUntilSelectHalfOpenInterval() {
+        MeasurementSeries series = MeasurementSeries.of(STATION, rows(0, 10, MeasurementField.TEMP));
+
+        MeasurementSeries window = series.since(time(3)).until(time(7));
+
+        assertEquals(rows(3, 4, MeasurementField.TEMP), window.asMeasurements());
+        assertSame(series, series.since(START.minus(STEP)));
+        assertSame(series, series.until(time(10)));
+        assertTrue(series.since(time(10)).isEmpty());
+        assertEquals(2, series.since(time(2).plusSeconds(30)).until(time(5)).size());
+    }
+
+    @Test
+    void columnFirstAppearingMidSeriesIsEmptyBefore() {
+        MeasurementSeries series = MeasurementSeries.of(STATION, rows(0, 5, MeasurementField.TEMP));
+
+        MeasurementSeries updated = series.append(rows(5, 5, MeasurementField.TEMP, MeasurementField.HUM), Instant.MIN);
+
+        assertFalse(series.hasField(MeasurementField.HUM));
+        assertTrue(updated.hasField(MeasurementField.HUM));
+        assertTrue(Double.isNaN(updated.value(MeasurementField.HUM, 4)));
+        assertNull(updated.get(4).getHum());
+        assertEquals(value(5, MeasurementField.HUM), updated.value(MeasurementField.HUM, 5));
+        assertEquals(value(4, MeasurementField.TEMP), updated.value(MeasurementField.TEMP, 4));
+        assertEquals(rows(0, 5, MeasurementField.TEMP), updated.until(time(5)).asMeasurements());
+        assertFalse(updated.until(time(5)).hasField(MeasurementField.HUM));
+        assertTrue(updated.since(time(5)).hasField(MeasurementField.HUM));
+        assertFalse(updated.append(List.of(), time(10)).hasField(MeasurementField.TEMP));
+    }
+
+    @Test
+    void keepsBarTrendOnlyOnceReported() {
+        MeasurementSeries series = MeasurementSeries.of(STATION, rows(0, 3, MeasurementField.TEMP));
+
+        List<WeatherMeasurement> withTrend = new ArrayList<>();
+        for (int row = 3; row < 6; row++) {
+            withTrend.add(WeatherMeasurement.builder()
+                    .stationId(STATION)
+                    .stationName("Station 1")
+                    .timestamp(time(row))
+                    .temp(value(row, MeasurementField.TEMP))
+                    .barTrend("steady")
+                    .build());
+        }
+        MeasurementSeries updated = series.append(withTrend, Instant.MIN);
+
+        assertFalse(series.hasBarTrend());
+        assertNull(series.barTrend(0));
+        assertTrue(updated.hasBarTrend());
+        assertNull(updated.barTrend(2));
+        assertNull(updated.get(2).getBarTrend());
+        assertEquals("steady", updated.barTrend(3));
+        assertEquals("steady", updated.get(5).getBarTrend());
+    }
+
+    @Test
+    void earlierViewsDoNotSeeAppendedRows() {
+        MeasurementSeries series = MeasurementSeries.of(STATION, rows(0, 3, MeasurementField.TEMP));
+
+        MeasurementSeries updated = series.append(rows(3, 1, MeasurementField.TEMP), Instant.MIN);
+        MeasurementSeries again = updated.append(rows(4, 1, MeasurementField.TEMP), Instant.MIN);
+
+        assertEquals(3, series.size());
+        assertEquals(4, updated.size());
+        assertEquals(5, again.size());
+        assertEquals(rows(0, 4, MeasurementField.TEMP), updated.asMeasurements());
+    }
+
+    private static List<WeatherMeasurement> rows(int from, int count, MeasurementField... fields) {
+        List<WeatherMeasurement> rows = new ArrayList<>(count);
+        for (int row = from; row < from + count; row++) {
+            WeatherMeasurement.WeatherMeasurementBuilder builder = WeatherMeasurement.builder()
+                    .stationId(STATION)
+                    .stationName("Station 1")
+                    .timestamp(time(row));
+            for (MeasurementField field : fields) {
+                field.set(builder, value(row, field));
+            }
+            rows.add(builder.build());
+        }
+        return rows;
+    }
+
+    private static Instant time(int row) {
+        return START.plus(STEP.multipliedBy(row));
+    }
+
+    private static double value(int row, MeasurementField field) {
+        return row * 0.5 + field.ordinal();
+    }
+
+    /**
+     * Estimación de la memoria retenida por una fila en una lista de WeatherMeasurement, con referencias
+     * comprimidas: cabecera y referencias del objeto, el Instant, cada Double informado y la celda de la lista.
+     * Los strings de estación se comparten entre filas y no se cuentan, igual que en retainedBytes().
+     */
+    private static long boxedBytesPerRow(WeatherMeasurement row) {
+        int references = 0;
+        for (Field field : WeatherMeasurement.class.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers())) {
+                references++;
+            }
+        }
+        long bytes = align(12 + 4L * references) + 24 + 4;
+        for (MeasurementField field : ALL) {
+            if (field.get(row) != null) {
+                bytes += 16;
+            }
+        }
+        return bytes;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) / 8 * 8;
+    }
+}
\ No newline at end of file
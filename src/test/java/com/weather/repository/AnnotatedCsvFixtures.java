@@ -0,0 +1,83 @@
+package com.weather.repository;
+
+import com.influxdb.Cancellable;
+import com.influxdb.query.FluxRecord;
+import com.influxdb.query.FluxTable;
+import com.influxdb.query.internal.FluxCsvParser;
+import okio.BufferedSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Respuestas de InfluxDB grabadas como CSV anotado (src/test/resources/influx) y el camino de FluxRecord
+ * del cliente con el que se comparan el parser crudo en los tests y en los benchmarks
+ */
+final class AnnotatedCsvFixtures {
+
+    private AnnotatedCsvFixtures() {
+    }
+
+    /**
+     * Contenido de una respuesta grabada
+     */
+    static String load(String name) {
+        try (InputStream in = AnnotatedCsvFixtures.class.getResourceAsStream("/influx/" + name)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing fixture " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Camino de FluxRecord: el parser del cliente crea los registros y se mapean como en WeatherRepository
+     */
+    static void parseRecords(BufferedSource source, MeasurementAssembler assembler) {
+        FluxCsvParser parser = new FluxCsvParser(FluxCsvParser.ResponseMode.FULL);
+        try {
+            parser.parseFluxResponse(source, new NoopCancellable(), new FluxCsvParser.FluxResponseConsumer() {
+
+                private int table = -1;
+                private MeasurementMappingPlan plan;
+
+                @Override
+                public void accept(int index, FluxTable fluxTable) {
+                }
+
+                @Override
+                public void accept(int index, FluxRecord record) {
+                    Instant time = record.getTime();
+                    String stationId = (String) record.getValueByKey("station_id");
+                    if (time == null || stationId == null) {
+                        return;
+                    }
+                    if (plan == null || record.getTable() != table) {
+                        table = record.getTable();
+                        plan = MeasurementMappingPlan.forColumns(record.getValues().keySet());
+                    }
+                    plan.apply(record, assembler.row(stationId, time));
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class NoopCancellable implements Cancellable {
+
+        @Override
+        public void cancel() {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,114 @@
+package com.weather.repository;
+
+import com.influxdb.exceptions.FluxQueryException;
+import com.weather.model.WeatherMeasurement;
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compara el parser de CSV crudo con el camino de FluxRecord del cliente sobre respuestas grabadas de InfluxDB
+ */
+class AnnotatedCsvParserTest {
+
+    @Test
+    void pivotedTableMatchesRecordPath() {
+        String csv = AnnotatedCsvFixtures.load("pivoted.csv");
+
+        List<WeatherMeasurement> measurements = parseRaw(csv);
+
+        assertEquals(parseRecords(csv), measurements);
+        assertEquals(4, measurements.size());
+        WeatherMeasurement first = measurements.get(0);
+        assertEquals("Estación \"Norte\", Sur", first.getStationName());
+        assertEquals("steady", first.getBarTrend());
+        assertEquals(55.5, first.getHum());
+        assertEquals(180.0, first.getWindDirLast());
+        assertEquals(Double.POSITIVE_INFINITY, measurements.get(1).getTemp());
+        assertNull(measurements.get(1).getWindDirLast());
+        assertEquals(Double.NEGATIVE_INFINITY, measurements.get(2).getTemp());
+        assertNull(measurements.get(2).getHum());
+        assertEquals("Línea\npartida", measurements.get(3).getStationName());
+        assertTrue(measurements.get(3).getTemp().isNaN());
+    }
+
+    @Test
+    void defaultAnnotationMatchesRecordPath() {
+        String csv = AnnotatedCsvFixtures.load("default.csv");
+
+        List<WeatherMeasurement> measurements = parseRaw(csv);
+
+        assertEquals(parseRecords(csv), measurements);
+        assertEquals(3, measurements.size());
+        assertEquals("Default Name", measurements.get(0).getStationName());
+        assertEquals(50.0, measurements.get(0).getHum());
+        assertEquals("Named", measurements.get(1).getStationName());
+        assertNull(measurements.get(1).getTemp());
+        assertEquals("Default Name", measurements.get(2).getStationName());
+    }
+
+    @Test
+    void longFormatMatchesRecordPath() {
+        String csv = AnnotatedCsvFixtures.load("long.csv");
+
+        List<WeatherMeasurement> measurements = parseRaw(csv);
+
+        assertEquals(parseRecords(csv), measurements);
+        assertEquals(3, measurements.size());
+        WeatherMeasurement first = measurements.get(0);
+        assertEquals(Instant.parse("2024-01-01T00:00:00Z"), first.getTimestamp());
+        assertEquals(21.5, first.getTemp());
+        assertEquals(55.0, first.getHum());
+        assertEquals(180.0, first.getWindDirLast());
+        assertEquals("steady", first.getBarTrend());
+        assertEquals(Double.POSITIVE_INFINITY, measurements.get(1).getTemp());
+        assertNull(measurements.get(1).getHum());
+        assertEquals("falling", measurements.get(1).getBarTrend());
+        assertEquals(Double.NEGATIVE_INFINITY, measurements.get(2).getTemp());
+    }
+
+    @Test
+    void errorTableFailsOnBothPaths() {
+        String csv = AnnotatedCsvFixtures.load("error.csv");
+
+        IllegalStateException raw = assertThrows(IllegalStateException.class, () -> parseRaw(csv));
+        FluxQueryException records = assertThrows(FluxQueryException.class, () -> parseRecords(csv));
+
+        assertTrue(raw.getMessage().contains("bucket \"weather\" not found"), raw.getMessage());
+        assertTrue(records.getMessage().contains("bucket \"weather\" not found"), records.getMessage());
+    }
+
+    @Test
+    void truncatedQuotedValueFails() {
+        String truncated = AnnotatedCsvFixtures.load("pivoted.csv").split("Línea")[0];
+
+        assertThrows(IllegalStateException.class, () -> parseRaw(truncated));
+    }
+
+    /**
+     * Camino de queryRaw: el CSV llega línea a línea al parser
+     */
+    private static List<WeatherMeasurement> parseRaw(String csv) {
+        MeasurementAssembler assembler = new MeasurementAssembler();
+        AnnotatedCsvParser parser = new AnnotatedCsvParser(assembler);
+        csv.lines().forEach(parser::line);
+        parser.finish();
+        return assembler.build();
+    }
+
+    /**
+     * Camino de FluxRecord del cliente sobre la respuesta completa
+     */
+    private static List<WeatherMeasurement> parseRecords(String csv) {
+        MeasurementAssembler assembler = new MeasurementAssembler();
+        AnnotatedCsvFixtures.parseRecords(new Buffer().writeUtf8(csv), assembler);
+        return assembler.build();
+    }
+}
\ No newline at end of file
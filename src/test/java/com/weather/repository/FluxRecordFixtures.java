@@ -0,0 +1,111 @@
+package com.weather.repository;
+
+import com.influxdb.query.FluxRecord;
+import com.weather.model.MeasurementField;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Registros Flux sintéticos con la forma de las consultas de mediciones: una fila por minuto y estación,
+ * pivotados (una tabla por estación) o en formato largo (una tabla por estación y campo)
+ */
+final class FluxRecordFixtures {
+
+    static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+    static final Duration STEP = Duration.ofMinutes(1);
+
+    /**
+     * Campos de medición; los de ubicación son tags y no vienen como columnas numéricas
+     */
+    static final Set<MeasurementField> FIELDS = EnumSet.complementOf(
+            EnumSet.of(MeasurementField.LATITUDE, MeasurementField.LONGITUDE, MeasurementField.ELEVATION));
+
+    private FluxRecordFixtures() {
+    }
+
+    static String stationId(int station) {
+        return "station-" + station;
+    }
+
+    static Instant time(int row) {
+        return START.plus(STEP.multipliedBy(row));
+    }
+
+    /**
+     * Valor determinista de un campo en una fila
+     */
+    static double value(int station, int row, MeasurementField field) {
+        return station * 1000 + row * 0.5 + field.ordinal();
+    }
+
+    /**
+     * Registros pivotados: cada registro trae todas las columnas de una fila
+     */
+    static List<FluxRecord> pivoted(int stations, int rows) {
+        List<FluxRecord> records = new ArrayList<>(stations * rows);
+        generatePivoted(stations, rows, records::add);
+        return records;
+    }
+
+    /**
+     * Genera los registros pivotados de a uno, como los produce el cliente al leer la respuesta
+     */
+    static void generatePivoted(int stations, int rows, Consumer<FluxRecord> consumer) {
+        for (int station = 0; station < stations; station++) {
+            for (int row = 0; row < rows; row++) {
+                FluxRecord record = record(station, station, row);
+                for (MeasurementField field : FIELDS) {
+                    record.getValues().put(field.getColumn(), value(station, row, field));
+                }
+                record.getValues().put("bar_trend", "steady");
+                consumer.accept(record);
+            }
+        }
+    }
+
+    /**
+     * Registros en formato largo, como los deja el pivot en el cliente: una tabla ordenada por tiempo por campo
+     */
+    static List<FluxRecord> longFormat(int stations, int rows) {
+        List<FluxRecord> records = new ArrayList<>(stations * rows * (FIELDS.size() + 1));
+        int table = 0;
+        for (int station = 0; station < stations; station++) {
+            for (MeasurementField field : FIELDS) {
+                for (int row = 0; row < rows; row++) {
+                    FluxRecord record = record(table, station, row);
+                    record.getValues().put("_field", field.getColumn());
+                    record.getValues().put("_value", value(station, row, field));
+                    records.add(record);
+                }
+                table++;
+            }
+            for (int row = 0; row < rows; row++) {
+                FluxRecord record = record(table, station, row);
+                record.getValues().put("_field", "bar_trend");
+                record.getValues().put("_value", "steady");
+                records.add(record);
+            }
+            table++;
+        }
+        return records;
+    }
+
+    private static FluxRecord record(int table, int station, int row) {
+        FluxRecord record = new FluxRecord(table);
+        Map<String, Object> values = record.getValues();
+        values.put("result", "_result");
+        values.put("table", (long) table);
+        values.put("_time", time(row));
+        values.put("_measurement", "weather");
+        values.put("station_id", stationId(station));
+        values.put("station_name", "Station " + station);
+        return record;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,119 @@
+package com.weather.repository;
+
+import com.influxdb.query.FluxRecord;
+import com.weather.model.WeatherMeasurement;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Mapeo original campo por campo de un FluxRecord pivotado, antes de MeasurementMappingPlan.
+ * Se conserva como referencia para comprobar que el plan produce el mismo resultado y para compararlos en JMH.
+ */
+final class LegacyRecordMapper {
+
+    private LegacyRecordMapper() {
+    }
+
+    static void apply(FluxRecord record, WeatherMeasurement.WeatherMeasurementBuilder builder) {
+        // Mapear campos de texto
+        setStringField(builder, record, "station_name", (b, v) -> b.stationName(v));
+        setStringField(builder, record, "bar_trend", (b, v) -> b.barTrend(v));
+
+        // Temperatura
+        setDoubleField(builder, record, "temp", (b, v) -> b.temp(v));
+        setDoubleField(builder, record, "temp_in", (b, v) -> b.tempIn(v));
+        setDoubleField(builder, record, "dew_point", (b, v) -> b.dewPoint(v));
+        setDoubleField(builder, record, "dew_point_in", (b, v) -> b.dewPointIn(v));
+        setDoubleField(builder, record, "heat_index", (b, v) -> b.heatIndex(v));
+        setDoubleField(builder, record, "heat_index_in", (b, v) -> b.heatIndexIn(v));
+        setDoubleField(builder, record, "wind_chill", (b, v) -> b.windChill(v));
+        setDoubleField(builder, record, "wet_bulb", (b, v) -> b.wetBulb(v));
+        setDoubleField(builder, record, "wet_bulb_in", (b, v) -> b.wetBulbIn(v));
+        setDoubleField(builder, record, "thw_index", (b, v) -> b.thwIndex(v));
+        setDoubleField(builder, record, "thsw_index", (b, v) -> b.thswIndex(v));
+
+        // Humedad
+        setDoubleField(builder, record, "hum", (b, v) -> b.hum(v));
+        setDoubleField(builder, record, "hum_in", (b, v) -> b.humIn(v));
+
+        // Presión
+        setDoubleField(builder, record, "bar_absolute", (b, v) -> b.barAbsolute(v));
+        setDoubleField(builder, record, "bar_sea_level", (b, v) -> b.barSeaLevel(v));
+        setDoubleField(builder, record, "bar_offset", (b, v) -> b.barOffset(v));
+
+        // Viento
+        setDoubleField(builder, record, "wind_speed_last", (b, v) -> b.windSpeedLast(v));
+        setDoubleField(builder, record, "wind_speed_avg_last_1_min", (b, v) -> b.windSpeedAvgLast1Min(v));
+        setDoubleField(builder, record, "wind_speed_avg_last_2_min", (b, v) -> b.windSpeedAvgLast2Min(v));
+        setDoubleField(builder, record, "wind_speed_avg_last_10_min", (b, v) -> b.windSpeedAvgLast10Min(v));
+        setDoubleField(builder, record, "wind_speed_hi_last_2_min", (b, v) -> b.windSpeedHiLast2Min(v));
+        setDoubleField(builder, record, "wind_speed_hi_last_10_min", (b, v) -> b.windSpeedHiLast10Min(v));
+        setDoubleField(builder, record, "wind_dir_last", (b, v) -> b.windDirLast(v));
+        setDoubleField(builder, record, "wind_dir_scalar_avg_last_1_min", (b, v) -> b.windDirScalarAvgLast1Min(v));
+        setDoubleField(builder, record, "wind_dir_scalar_avg_last_2_min", (b, v) -> b.windDirScalarAvgLast2Min(v));
+        setDoubleField(builder, record, "wind_dir_scalar_avg_last_10_min", (b, v) -> b.windDirScalarAvgLast10Min(v));
+        setDoubleField(builder, record, "wind_dir_at_hi_speed_last_2_min", (b, v) -> b.windDirAtHiSpeedLast2Min(v));
+        setDoubleField(builder, record, "wind_dir_at_hi_speed_last_10_min", (b, v) -> b.windDirAtHiSpeedLast10Min(v));
+        setDoubleField(builder, record, "wind_run_day", (b, v) -> b.windRunDay(v));
+
+        // Lluvia
+        setDoubleField(builder, record, "rainfall_daily_mm", (b, v) -> b.rainfallDailyMm(v));
+        setDoubleField(builder, record, "rainfall_daily_in", (b, v) -> b.rainfallDailyIn(v));
+        setDoubleField(builder, record, "rainfall_day_mm", (b, v) -> b.rainfallDayMm(v));
+        setDoubleField(builder, record, "rainfall_month_mm", (b, v) -> b.rainfallMonthMm(v));
+        setDoubleField(builder, record, "rainfall_year_mm", (b, v) -> b.rainfallYearMm(v));
+        setDoubleField(builder, record, "rainfall_last_15_min_mm", (b, v) -> b.rainfallLast15MinMm(v));
+        setDoubleField(builder, record, "rainfall_last_60_min_mm", (b, v) -> b.rainfallLast60MinMm(v));
+        setDoubleField(builder, record, "rainfall_last_24_hr_mm", (b, v) -> b.rainfallLast24HrMm(v));
+        setDoubleField(builder, record, "rain_rate_last_mm", (b, v) -> b.rainRateLastMm(v));
+        setDoubleField(builder, record, "rain_rate_hi_mm", (b, v) -> b.rainRateHiMm(v));
+        setDoubleField(builder, record, "rain_rate_hi_last_15_min_mm", (b, v) -> b.rainRateHiLast15MinMm(v));
+
+        // Radiación solar y UV
+        setDoubleField(builder, record, "solar_rad", (b, v) -> b.solarRad(v));
+        setDoubleField(builder, record, "solar_energy_day", (b, v) -> b.solarEnergyDay(v));
+        setDoubleField(builder, record, "uv_index", (b, v) -> b.uvIndex(v));
+        setDoubleField(builder, record, "uv_dose_day", (b, v) -> b.uvDoseDay(v));
+
+        // Evapotranspiración
+        setDoubleField(builder, record, "et_day", (b, v) -> b.etDay(v));
+        setDoubleField(builder, record, "et_month", (b, v) -> b.etMonth(v));
+        setDoubleField(builder, record, "et_year", (b, v) -> b.etYear(v));
+
+        // Ubicación - estos campos son tags en InfluxDB, no fields
+        // Se obtienen directamente del record como tags
+        Object lat = record.getValueByKey("latitude");
+        Object lon = record.getValueByKey("longitude");
+        Object elev = record.getValueByKey("elevation");
+
+        if (lat instanceof Number) {
+            builder.latitude(((Number) lat).doubleValue());
+        }
+        if (lon instanceof Number) {
+            builder.longitude(((Number) lon).doubleValue());
+        }
+        if (elev instanceof Number) {
+            builder.elevation(((Number) elev).doubleValue());
+        }
+    }
+
+    private static void setStringField(WeatherMeasurement.WeatherMeasurementBuilder builder,
+                                       FluxRecord record,
+                                       String fieldName,
+                                       BiConsumer<WeatherMeasurement.WeatherMeasurementBuilder, String> setter) {
+        Object value = record.getValueByKey(fieldName);
+        if (value instanceof String) {
+            setter.accept(builder, (String) value);
+        }
+    }
+
+    private static void setDoubleField(WeatherMeasurement.WeatherMeasurementBuilder builder,
+                                       FluxRecord record,
+                                       String fieldName,
+                                       BiConsumer<WeatherMeasurement.WeatherMeasurementBuilder, Double> setter) {
+        Object value = record.getValueByKey(fieldName);
+        if (value instanceof Number) {
+            setter.accept(builder, ((Number) value).doubleValue());
+        }
+    }
+}
\ No newline at end of file
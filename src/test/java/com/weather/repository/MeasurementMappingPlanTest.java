@@ -0,0 +1,96 @@
+package com.weather.repository;
+
+import com.influxdb.query.FluxRecord;
+import com.weather.model.MeasurementField;
+import com.weather.model.WeatherMeasurement;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MeasurementMappingPlanTest {
+
+    @Test
+    void matchesLegacyMapperOnPivotedRecords() {
+        for (FluxRecord record : FluxRecordFixtures.pivoted(2, 5)) {
+            assertEquals(legacy(record), planned(record));
+        }
+    }
+
+    @Test
+    void matchesLegacyMapperWithMissingNullAndForeignColumns() {
+        FluxRecord record = new FluxRecord(0);
+        record.getValues().put("_time", FluxRecordFixtures.START);
+        record.getValues().put("station_id", "s1");
+        record.getValues().put("station_name", "Station 1");
+        record.getValues().put("temp", 21.5);
+        record.getValues().put("hum", null);
+        record.getValues().put("wind_dir_last", 180L);
+        record.getValues().put("bar_trend", 3L);
+        record.getValues().put("unknown_field", 1.0);
+
+        WeatherMeasurement measurement = planned(record);
+
+        assertEquals(legacy(record), measurement);
+        assertEquals(21.5, measurement.getTemp());
+        assertEquals(180.0, measurement.getWindDirLast());
+        assertNull(measurement.getHum());
+        assertNull(measurement.getBarTrend());
+    }
+
+    @Test
+    void mapsLongFormatRecordsOfEveryField() {
+        MeasurementAssembler assembler = new MeasurementAssembler();
+        MeasurementMappingPlan plan = null;
+        for (FluxRecord record : FluxRecordFixtures.longFormat(1, 3)) {
+            if (plan == null) {
+                plan = MeasurementMappingPlan.forColumns(record.getValues().keySet());
+            }
+            plan.apply(record, assembler.row((String) record.getValueByKey("station_id"), record.getTime()));
+        }
+
+        List<WeatherMeasurement> longFormat = assembler.build();
+        List<FluxRecord> pivoted = FluxRecordFixtures.pivoted(1, 3);
+        assertEquals(pivoted.size(), longFormat.size());
+        for (int i = 0; i < pivoted.size(); i++) {
+            assertEquals(legacy(pivoted.get(i)), longFormat.get(i));
+        }
+    }
+
+    @Test
+    void skipsColumnsThatAreNotMeasurementFields() {
+        MeasurementMappingPlan plan = MeasurementMappingPlan.forColumns(
+                List.of("result", "table", "_time", "station_id", MeasurementField.TEMP.getColumn()));
+        FluxRecord record = new FluxRecord(0);
+        record.getValues().put("temp", 10.0);
+        record.getValues().put("hum", 50.0);
+
+        WeatherMeasurement.WeatherMeasurementBuilder builder = WeatherMeasurement.builder();
+        plan.apply(record, builder);
+
+        // hum no estaba entre las columnas de la tabla al compilar el plan
+        assertEquals(10.0, builder.build().getTemp());
+        assertNull(builder.build().getHum());
+    }
+
+    private static WeatherMeasurement legacy(FluxRecord record) {
+        WeatherMeasurement.WeatherMeasurementBuilder builder = base(record);
+        LegacyRecordMapper.apply(record, builder);
+        return builder.build();
+    }
+
+    private static WeatherMeasurement planned(FluxRecord record) {
+        WeatherMeasurement.WeatherMeasurementBuilder builder = base(record);
+        MeasurementMappingPlan.forColumns(record.getValues().keySet()).apply(record, builder);
+        return builder.build();
+    }
+
+    private static WeatherMeasurement.WeatherMeasurementBuilder base(FluxRecord record) {
+        return WeatherMeasurement.builder()
+                .stationId((String) record.getValueByKey("station_id"))
+                .timestamp((Instant) record.getValueByKey("_time"));
+    }
+}
\ No newline at end of file
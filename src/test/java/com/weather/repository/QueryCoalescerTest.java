@@ -0,0 +1,94 @@
+package com.weather.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryCoalescerTest {
+
+    private final QueryCoalescer coalescer = new QueryCoalescer();
+
+    @Test
+    void concurrentCallersShareOneExecution() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> coalescer.execute("key", () -> {
+            executions.incrementAndGet();
+            await(release);
+            return "result";
+        }));
+        waitUntilRunning(executions);
+        Thread joiner = new Thread(() -> assertEquals("result", coalescer.execute("key", () -> "own query")));
+        joiner.start();
+        waitUntilWaiting(joiner);
+        release.countDown();
+
+        assertEquals("result", first.get(5, TimeUnit.SECONDS));
+        joiner.join(5_000);
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void errorIsPropagatedToWaitersAndKeyIsReleased() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Error error = new OutOfMemoryError("test");
+
+        CompletableFuture<Object> first = CompletableFuture.supplyAsync(() -> coalescer.execute("key", () -> {
+            executions.incrementAndGet();
+            await(release);
+            throw error;
+        }));
+        waitUntilRunning(executions);
+        CompletableFuture<Throwable> joined = new CompletableFuture<>();
+        Thread joiner = new Thread(() -> {
+            try {
+                coalescer.execute("key", () -> "own query");
+                joined.complete(null);
+            } catch (Throwable e) {
+                joined.complete(e);
+            }
+        });
+        joiner.start();
+        waitUntilWaiting(joiner);
+        release.countDown();
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertSame(error, failure.getCause());
+        assertSame(error, joined.get(5, TimeUnit.SECONDS));
+        assertEquals("next", coalescer.execute("key", () -> "next"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void waitUntilRunning(AtomicInteger executions) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (executions.get() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static void waitUntilWaiting(Thread thread) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (thread.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,95 @@
+package com.weather.repository;
+
+import com.influxdb.Cancellable;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryStreamTest {
+
+    @Test
+    void deliversItemsInOrderUntilComplete() {
+        QueryStream<Integer> stream = new QueryStream<>(4);
+        TestCancellable cancellable = new TestCancellable();
+
+        CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 100; i++) {
+                stream.onNext(cancellable, i);
+            }
+            stream.onComplete();
+        });
+
+        List<Integer> received = new ArrayList<>();
+        stream.drain(received::add);
+
+        assertEquals(IntStream.range(0, 100).boxed().toList(), received);
+    }
+
+    @Test
+    void propagatesQueryError() {
+        QueryStream<Integer> stream = new QueryStream<>(4);
+        stream.onNext(new TestCancellable(), 1);
+        stream.onError(new IllegalStateException("boom"));
+
+        List<Integer> received = new ArrayList<>();
+        IllegalStateException error = assertThrows(IllegalStateException.class, () -> stream.drain(received::add));
+
+        assertEquals("boom", error.getMessage());
+        assertEquals(List.of(1), received);
+    }
+
+    @Test
+    void cancelsQueryWhenConsumerFails() {
+        QueryStream<Integer> stream = new QueryStream<>(4);
+        TestCancellable cancellable = new TestCancellable();
+        stream.onNext(cancellable, 1);
+
+        assertThrows(IllegalArgumentException.class, () -> stream.drain(item -> {
+            throw new IllegalArgumentException("client gone");
+        }));
+        assertTrue(cancellable.isCancelled());
+    }
+
+    @Test
+    void interruptedProducerDoesNotBlockConsumer() throws Exception {
+        QueryStream<Integer> stream = new QueryStream<>(1);
+        TestCancellable cancellable = new TestCancellable();
+
+        // El productor se interrumpe con la cola llena: ni el elemento ni las marcas de fin caben en la cola
+        stream.onNext(cancellable, 1);
+        Thread.currentThread().interrupt();
+        stream.onNext(cancellable, 2);
+        stream.onComplete();
+        assertTrue(Thread.interrupted());
+
+        CompletableFuture<Void> drained = CompletableFuture.runAsync(() -> stream.drain(item -> { }));
+        Exception error = assertThrows(Exception.class, () -> drained.get(5, TimeUnit.SECONDS));
+
+        assertTrue(error.getCause() instanceof IllegalStateException, "unexpected " + error);
+        assertTrue(cancellable.isCancelled());
+    }
+
+    private static final class TestCancellable implements Cancellable {
+
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+
+        @Override
+        public void cancel() {
+            cancelled.set(true);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+    }
+}
\ No newline at end of file
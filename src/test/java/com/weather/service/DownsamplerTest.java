@@ -0,0 +1,139 @@
+package com.weather.service;
+
+import com.weather.model.MeasurementField;
+import com.weather.model.MeasurementSeries;
+import com.weather.model.WeatherMeasurement;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class DownsamplerTest {
+
+    private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+    private static final int ROWS = 10_000;
+    private static final int SPIKE = 6_543;
+
+    @Test
+    void lttbKeepsEndpointsAndSpikeWithinBudget() {
+        double[] x = times(ROWS);
+        double[] y = wave(ROWS);
+
+        for (int maxPoints : new int[]{3, 10, 100, 800}) {
+            int[] selected = Downsampler.lttb(x, y, maxPoints);
+
+            assertTrue(selected.length <= maxPoints, selected.length + " > " + maxPoints);
+            assertEquals(0, selected[0]);
+            assertEquals(ROWS - 1, selected[selected.length - 1]);
+            assertIncreasing(selected);
+            if (maxPoints >= 10) {
+                assertContains(selected, SPIKE);
+            }
+        }
+    }
+
+    @Test
+    void m4KeepsEndpointsAndSpikeWithinBudget() {
+        double[] x = times(ROWS);
+        double[] y = wave(ROWS);
+
+        for (int maxPoints : new int[]{4, 10, 100, 800}) {
+            int[] selected = Downsampler.m4(x, y, maxPoints);
+
+            assertTrue(selected.length <= maxPoints, selected.length + " > " + maxPoints);
+            assertEquals(0, selected[0]);
+            assertEquals(ROWS - 1, selected[selected.length - 1]);
+            assertIncreasing(selected);
+            assertContains(selected, SPIKE);
+        }
+    }
+
+    @Test
+    void returnsSameSeriesWhenItFits() {
+        MeasurementSeries series = MeasurementSeries.of("s1", measurements(100, 100));
+
+        assertSame(series, Downsampler.apply(series, new Downsampler.Spec(Downsampler.Method.LTTB, 100,
+                MeasurementField.TEMP)));
+    }
+
+    @Test
+    void keepsRowsWithoutGuideField() {
+        // La temperatura solo está en la primera mitad; la segunda mitad solo informa humedad
+        MeasurementSeries series = MeasurementSeries.of("s1", measurements(ROWS, ROWS / 2));
+
+        for (Downsampler.Method method : Downsampler.Method.values()) {
+            MeasurementSeries reduced = Downsampler.apply(series,
+                    new Downsampler.Spec(method, 100, MeasurementField.TEMP));
+
+            assertTrue(reduced.size() <= 100);
+            assertEquals(series.timestamp(0), reduced.timestamp(0));
+            assertEquals(series.timestamp(ROWS - 1), reduced.timestamp(reduced.size() - 1));
+            int withoutGuide = 0;
+            for (WeatherMeasurement measurement : reduced.asMeasurements()) {
+                if (measurement.getTemp() == null) {
+                    assertTrue(measurement.getHum() != null);
+                    withoutGuide++;
+                }
+            }
+            assertTrue(withoutGuide > 10, method + " kept " + withoutGuide + " rows without the guide field");
+        }
+    }
+
+    private static double[] times(int n) {
+        double[] x = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = i * 60.0;
+        }
+        return x;
+    }
+
+    /**
+     * Onda suave con un único pico muy marcado
+     */
+    private static double[] wave(int n) {
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            y[i] = 20 + 5 * Math.sin(i / 500.0);
+        }
+        y[SPIKE] = 60;
+        return y;
+    }
+
+    private static List<WeatherMeasurement> measurements(int rows, int withTemp) {
+        List<WeatherMeasurement> measurements = new ArrayList<>(rows);
+        for (int row = 0; row < rows; row++) {
+            WeatherMeasurement.WeatherMeasurementBuilder builder = WeatherMeasurement.builder()
+                    .stationId("s1")
+                    .stationName("Station 1")
+                    .timestamp(START.plus(Duration.ofMinutes(row)))
+                    .hum(50.0 + row % 7);
+            if (row < withTemp) {
+                builder.temp(20 + 5 * Math.sin(row / 500.0));
+            }
+            measurements.add(builder.build());
+        }
+        return measurements;
+    }
+
+    private static void assertIncreasing(int[] selected) {
+        for (int i = 1; i < selected.length; i++) {
+            assertTrue(selected[i] > selected[i - 1], "indices not increasing at " + i);
+        }
+    }
+
+    private static void assertContains(int[] selected, int index) {
+        for (int value : selected) {
+            if (value == index) {
+                return;
+            }
+        }
+        fail("index " + index + " not selected");
+    }
+}
\ No newline at end of file